@@ -0,0 +1,116 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.DefaultProjectBuildingRequest;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.internal.impl.SimpleLocalRepositoryManagerFactory;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.ee10.servlet.ServletHolder;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+
+/**
+ * An in-process proxy server backed by a {@link FakeRepository}, configured like the start goal
+ * does by default (without compression, prefetching or persistence).
+ */
+final class EmbeddedProxy implements AutoCloseable {
+    private final Server server;
+    private final ServerConnector connector;
+    private final FairScheduler scheduler;
+    private final ResolverProxyServlet servlet;
+
+    @SuppressWarnings("deprecation")
+    EmbeddedProxy(FakeRepository repository, Path localRepository, int resolverThreads)
+            throws Exception {
+        DefaultRepositorySystemSession repositorySession = new DefaultRepositorySystemSession();
+        repositorySession.setLocalRepositoryManager(
+                new SimpleLocalRepositoryManagerFactory()
+                        .newInstance(
+                                repositorySession, new LocalRepository(localRepository.toFile())));
+        MavenSession session =
+                new MavenSession(
+                        null,
+                        repositorySession,
+                        new DefaultMavenExecutionRequest(),
+                        new DefaultMavenExecutionResult());
+        servlet =
+                new ResolverProxyServlet(
+                        repository.newRepositorySystem(),
+                        session,
+                        new DefaultProjectBuildingRequest(),
+                        null,
+                        PluginIndex.build(new MavenProject(), List.of(), List.of()),
+                        ReactorIndex.build(List.of()),
+                        new RequestFilter(List.of()),
+                        new BoundedCache<>(10000),
+                        new InFlightTable<>(),
+                        new BoundedCache<>(10000),
+                        new BoundedCache<>(10000),
+                        new DigestIndex(10000),
+                        new ContentCache(64 * 1024 * 1024, 256 * 1024, 128),
+                        Compression.DISABLED,
+                        SpeculativePrefetcher.DISABLED,
+                        null,
+                        PersistentIndex.DISABLED,
+                        Timeline.DISABLED,
+                        TraceRecorder.DISABLED,
+                        scheduler);
+        server = new Server();
+        connector = new ServerConnector(server);
+        server.addConnector(connector);
+        ServletContextHandler context = new ServletContextHandler("/");
+        ServletHolder servletHolder = new ServletHolder(servlet);
+        servletHolder.setAsyncSupported(true);
+        context.addServlet(servletHolder, "/*");
+        server.setHandler(context);
+        server.start();
+    }
+
+    /**
+     * Get the URI for a repository path.
+     *
+     * @param path the path, starting with a slash
+     */
+    URI getUri(String path) {
+        return URI.create("http://localhost:" + connector.getLocalPort() + path);
+    }
+
+    ResolverProxyServlet getServlet() {
+        return servlet;
+    }
+
+    @Override
+    public void close() throws Exception {
+        // This also destroys the servlet.
+        server.stop();
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,180 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.resolution.VersionRangeRequest;
+import org.eclipse.aether.resolution.VersionRangeResult;
+import org.eclipse.aether.util.version.GenericVersionScheme;
+import org.eclipse.aether.version.InvalidVersionSpecificationException;
+import org.eclipse.aether.version.Version;
+
+/**
+ * File backed repository standing in for the repository system, so that
+ * the proxy can be exercised without a local repository or network access. Artifacts are
+ * registered with a size and their files (filled with zeros) are created on first resolution.
+ * Version range requests return the versions of the registered artifacts.
+ */
+final class FakeRepository {
+    private interface Handler {
+        Object invoke(Method method, Object[] args) throws Exception;
+    }
+
+    private final Path directory;
+    private final Map<ArtifactKey, Long> artifacts = new ConcurrentHashMap<>();
+    private final GenericVersionScheme versionScheme = new GenericVersionScheme();
+
+    FakeRepository(Path directory) {
+        this.directory = directory;
+    }
+
+    void addArtifact(ArtifactKey key, long size) {
+        artifacts.putIfAbsent(key, size);
+    }
+
+    boolean hasVersions(String groupId, String artifactId) {
+        return artifacts.keySet().stream()
+                .anyMatch(
+                        key ->
+                                key.groupId().equals(groupId)
+                                        && key.artifactId().equals(artifactId));
+    }
+
+    private static <T> T stub(Class<T> iface, Handler handler) {
+        InvocationHandler invocationHandler =
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                return iface.getSimpleName() + " stub";
+                        }
+                    }
+                    return handler.invoke(method, args);
+                };
+        return iface.cast(
+                Proxy.newProxyInstance(
+                        FakeRepository.class.getClassLoader(),
+                        new Class<?>[] {iface},
+                        invocationHandler));
+    }
+
+    @SuppressWarnings("unchecked")
+    RepositorySystem newRepositorySystem() {
+        return stub(
+                RepositorySystem.class,
+                (method, args) -> {
+                    switch (method.getName()) {
+                        case "resolveArtifact":
+                            return resolveArtifact((ArtifactRequest) args[1]);
+                        case "resolveArtifacts":
+                            return resolveArtifacts((Collection<ArtifactRequest>) args[1]);
+                        case "resolveVersionRange":
+                            return resolveVersionRange((VersionRangeRequest) args[1]);
+                        default:
+                            throw new UnsupportedOperationException(method.toString());
+                    }
+                });
+    }
+
+    private ArtifactResult resolveArtifact(ArtifactRequest request)
+            throws IOException, ArtifactResolutionException {
+        Artifact artifact = request.getArtifact();
+        ArtifactKey key =
+                new ArtifactKey(
+                        artifact.getGroupId(),
+                        artifact.getArtifactId(),
+                        artifact.getVersion(),
+                        artifact.getClassifier().isEmpty() ? null : artifact.getClassifier(),
+                        artifact.getExtension());
+        ArtifactResult result = new ArtifactResult(request);
+        Long size = artifacts.get(key);
+        if (size == null) {
+            result.addException(new IOException(key + " not found"));
+            throw new ArtifactResolutionException(List.of(result));
+        }
+        Path file = directory.resolve(key.toPath());
+        synchronized (this) {
+            if (!Files.exists(file)) {
+                Files.createDirectories(file.getParent());
+                try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                    raf.setLength(size);
+                }
+            }
+        }
+        result.setArtifact(artifact.setFile(file.toFile()));
+        return result;
+    }
+
+    private List<ArtifactResult> resolveArtifacts(Collection<ArtifactRequest> requests)
+            throws IOException, ArtifactResolutionException {
+        List<ArtifactResult> results = new ArrayList<>(requests.size());
+        boolean failed = false;
+        for (ArtifactRequest request : requests) {
+            try {
+                results.add(resolveArtifact(request));
+            } catch (ArtifactResolutionException ex) {
+                results.add(ex.getResult());
+                failed = true;
+            }
+        }
+        if (failed) {
+            throw new ArtifactResolutionException(results);
+        }
+        return results;
+    }
+
+    private VersionRangeResult resolveVersionRange(VersionRangeRequest request)
+            throws InvalidVersionSpecificationException {
+        Artifact artifact = request.getArtifact();
+        Set<Version> versions = new TreeSet<>();
+        for (ArtifactKey key : artifacts.keySet()) {
+            if (key.groupId().equals(artifact.getGroupId())
+                    && key.artifactId().equals(artifact.getArtifactId())) {
+                versions.add(versionScheme.parseVersion(key.version()));
+            }
+        }
+        VersionRangeResult result = new VersionRangeResult(request);
+        result.setVersions(new ArrayList<>(versions));
+        return result;
+    }
+}
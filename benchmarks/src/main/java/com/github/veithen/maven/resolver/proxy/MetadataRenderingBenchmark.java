@@ -0,0 +1,67 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks the rendering of artifact level metadata (including its checksums). */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetadataRenderingBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int versionCount;
+
+    private List<String> versions;
+
+    @Setup
+    public void setup() {
+        versions = new ArrayList<>(versionCount);
+        for (int i = 0; i < versionCount; i++) {
+            versions.add(String.format("%d.%d.%d", i / 100, i / 10 % 10, i % 10));
+        }
+    }
+
+    @Benchmark
+    public Checksums renderVersions() throws XMLStreamException {
+        return RenderedMetadata.forVersions(
+                        "org.example", "example", versions.get(versions.size() - 1), versions)
+                .getChecksums();
+    }
+}
@@ -0,0 +1,70 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks the classification of request paths. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathParsingBenchmark {
+    @Param({
+        "org/apache/maven/plugins/maven-compiler-plugin/3.13.0/maven-compiler-plugin-3.13.0.jar",
+        "com/google/guava/guava/33.0.0-jre/guava-33.0.0-jre-sources.jar",
+        "org/example/lib/1.0-SNAPSHOT/lib-1.0-20250101.120000-1.pom"
+    })
+    public String path;
+
+    private final Set<String> pluginGroups =
+            Set.of("org.apache.maven.plugins", "org.codehaus.mojo");
+    private String metadataDirectory;
+
+    @Setup
+    public void setup() {
+        metadataDirectory = path.substring(0, path.lastIndexOf('/', path.lastIndexOf('/') - 1));
+    }
+
+    @Benchmark
+    public ArtifactKey parseArtifactRequest() {
+        return ResolverProxyServlet.parseArtifactRequest(path);
+    }
+
+    @Benchmark
+    public MetadataPath parseMetadataPath() {
+        return MetadataPath.parse(metadataDirectory, pluginGroups, (key, version) -> false);
+    }
+}
@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the dispatch of requests through an in-process Jetty server to the servlet, with the
+ * caches populated. The repository system is stubbed, so that the results don't depend on the
+ * local repository or the network.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServletDispatchBenchmark {
+    private static final int ARTIFACT_SIZE = 64 * 1024;
+
+    private static final int VERSION_COUNT = 100;
+
+    @Param({"artifact", "checksum", "metadata"})
+    public String kind;
+
+    private Path directory;
+    private EmbeddedProxy proxy;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("dispatch-benchmark");
+        FakeRepository repository = new FakeRepository(directory.resolve("remote"));
+        repository.addArtifact(
+                new ArtifactKey("org.example", "lib", "1.0", null, "jar"), ARTIFACT_SIZE);
+        for (int i = 0; i < VERSION_COUNT; i++) {
+            repository.addArtifact(
+                    new ArtifactKey("org.example", "lib", "1." + i, null, "pom"), 1024);
+        }
+        proxy = new EmbeddedProxy(repository, directory.resolve("local"), 4);
+        String path;
+        switch (kind) {
+            case "artifact":
+                path = "/org/example/lib/1.0/lib-1.0.jar";
+                break;
+            case "checksum":
+                path = "/org/example/lib/1.0/lib-1.0.jar.sha1";
+                break;
+            case "metadata":
+                path = "/org/example/lib/maven-metadata.xml";
+                break;
+            default:
+                throw new IllegalArgumentException(kind);
+        }
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(proxy.getUri(path)).build();
+        // Populate the caches; the checksums are computed on the first request for them.
+        for (int i = 0; i < 2; i++) {
+            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            if (i == 1 && status != 200) {
+                throw new IllegalStateException("Unexpected status " + status + " for " + path);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        proxy.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] dispatch() throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).body();
+    }
+}
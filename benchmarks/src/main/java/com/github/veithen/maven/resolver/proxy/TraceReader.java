@@ -0,0 +1,75 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Reads trace files written by {@link TraceRecorder}. */
+final class TraceReader {
+    /** A request read from a trace file. */
+    record Entry(
+            long startMicros,
+            String build,
+            String method,
+            String path,
+            int status,
+            long bytes,
+            long durationMicros) {}
+
+    private TraceReader() {}
+
+    /** Read a trace file, sorting the entries by start time. */
+    static List<Entry> read(Path file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                if (fields.length != 7) {
+                    throw new IOException("Invalid trace entry: " + line);
+                }
+                try {
+                    entries.add(
+                            new Entry(
+                                    Long.parseLong(fields[0]),
+                                    fields[1],
+                                    fields[2],
+                                    fields[3],
+                                    Integer.parseInt(fields[4]),
+                                    Long.parseLong(fields[5]),
+                                    Long.parseLong(fields[6])));
+                } catch (NumberFormatException ex) {
+                    throw new IOException("Invalid trace entry: " + line, ex);
+                }
+            }
+        }
+        entries.sort((e1, e2) -> Long.compare(e1.startMicros(), e2.startMicros()));
+        return entries;
+    }
+}
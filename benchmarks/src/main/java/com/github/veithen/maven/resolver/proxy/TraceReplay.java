@@ -0,0 +1,255 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Replays a trace recorded by the start goal ({@code resolverProxy.recordTrace}) against an
+ * in-process proxy, with a number of concurrent clients that issue the recorded requests in the
+ * order in which they were originally received, as fast as possible. The proxy is backed by a
+ * {@link FakeRepository} containing the artifacts that were found during the recorded run, so no
+ * network access is required. The trace is replayed several times: the first iteration measures
+ * the proxy with cold caches, the following ones with warm caches.
+ *
+ * <p>Usage: {@code TraceReplay <trace file> [<clients> [<iterations> [<resolver threads>]]]}
+ */
+public final class TraceReplay {
+    /** The size of artifacts for which the trace only contains checksum or HEAD requests. */
+    private static final long DEFAULT_SIZE = 1024;
+
+    private record Result(
+            long durationNanos, long[] latencies, int notFound, int mismatches, int errors) {}
+
+    private TraceReplay() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 4) {
+            System.err.println(
+                    "Usage: TraceReplay <trace file> [<clients> [<iterations>"
+                            + " [<resolver threads>]]]");
+            System.exit(1);
+        }
+        List<TraceReader.Entry> entries = TraceReader.read(Path.of(args[0]));
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int resolverThreads = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        long recordedNotFound = entries.stream().filter(entry -> entry.status() == 404).count();
+        System.out.printf(
+                Locale.ROOT,
+                "%d requests in trace, %.1f%% not found%n",
+                entries.size(),
+                percentage(recordedNotFound, entries.size()));
+        Path directory = Files.createTempDirectory("trace-replay");
+        try {
+            FakeRepository repository = new FakeRepository(directory.resolve("remote"));
+            populate(repository, entries);
+            try (EmbeddedProxy proxy =
+                    new EmbeddedProxy(repository, directory.resolve("local"), resolverThreads)) {
+                HttpClient client =
+                        HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+                for (int i = 1; i <= iterations; i++) {
+                    report(i, clients, replay(proxy, client, entries, clients));
+                }
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    /** Add the artifacts that were found during the recorded run to the fake repository. */
+    private static void populate(FakeRepository repository, List<TraceReader.Entry> entries) {
+        Map<ArtifactKey, Long> sizes = new HashMap<>();
+        List<MetadataPath> metadataPaths = new ArrayList<>();
+        for (TraceReader.Entry entry : entries) {
+            int status = entry.status();
+            if (status != 200 && status != 206 && status != 304) {
+                continue;
+            }
+            String path = entry.path().substring(1);
+            boolean checksum = false;
+            int idx = path.lastIndexOf('.');
+            if (idx != -1 && ChecksumAlgorithm.forExtension(path.substring(idx + 1)) != null) {
+                path = path.substring(0, idx);
+                checksum = true;
+            }
+            if (path.endsWith("/maven-metadata.xml")) {
+                MetadataPath metadataPath =
+                        MetadataPath.parse(
+                                path.substring(0, path.lastIndexOf('/')),
+                                Set.of(),
+                                (key, version) -> false);
+                if (metadataPath.level() == MetadataPath.Level.VERSION) {
+                    sizes.merge(
+                            new ArtifactKey(
+                                    metadataPath.groupId(),
+                                    metadataPath.artifactId(),
+                                    metadataPath.version(),
+                                    null,
+                                    "pom"),
+                            0L,
+                            Math::max);
+                } else if (metadataPath.level() == MetadataPath.Level.ARTIFACT) {
+                    metadataPaths.add(metadataPath);
+                }
+            } else {
+                ArtifactKey key = ResolverProxyServlet.parseArtifactRequest(path);
+                if (key != null) {
+                    long size = checksum || status != 200 ? 0 : entry.bytes();
+                    sizes.merge(key, size, Math::max);
+                }
+            }
+        }
+        for (Map.Entry<ArtifactKey, Long> entry : sizes.entrySet()) {
+            long size = entry.getValue();
+            repository.addArtifact(entry.getKey(), size == 0 ? DEFAULT_SIZE : size);
+        }
+        // Make sure that metadata that was found during the recorded run has at least one
+        // version.
+        for (MetadataPath metadataPath : metadataPaths) {
+            if (!repository.hasVersions(metadataPath.groupId(), metadataPath.artifactId())) {
+                repository.addArtifact(
+                        new ArtifactKey(
+                                metadataPath.groupId(),
+                                metadataPath.artifactId(),
+                                "1.0",
+                                null,
+                                "pom"),
+                        DEFAULT_SIZE);
+            }
+        }
+    }
+
+    private static Result replay(
+            EmbeddedProxy proxy,
+            HttpClient client,
+            List<TraceReader.Entry> entries,
+            int clients)
+            throws InterruptedException {
+        long[] latencies = new long[entries.size()];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger notFound = new AtomicInteger();
+        AtomicInteger mismatches = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        Runnable worker =
+                () -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < latencies.length) {
+                        TraceReader.Entry entry = entries.get(i);
+                        HttpRequest request =
+                                HttpRequest.newBuilder(proxy.getUri(entry.path()))
+                                        .method(
+                                                entry.method(),
+                                                HttpRequest.BodyPublishers.noBody())
+                                        .build();
+                        long start = System.nanoTime();
+                        int status;
+                        try {
+                            status =
+                                    client.send(request, HttpResponse.BodyHandlers.discarding())
+                                            .statusCode();
+                        } catch (IOException | InterruptedException ex) {
+                            errors.incrementAndGet();
+                            continue;
+                        } finally {
+                            latencies[i] = System.nanoTime() - start;
+                        }
+                        if (status == 404) {
+                            notFound.incrementAndGet();
+                        }
+                        // Conditional request headers are not recorded, so 304 becomes 200.
+                        int expectedStatus = entry.status() == 304 ? 200 : entry.status();
+                        if (status != expectedStatus) {
+                            mismatches.incrementAndGet();
+                        }
+                    }
+                };
+        Thread[] threads = new Thread[clients];
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            threads[i] = new Thread(worker, "trace-replay-" + (i + 1));
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return new Result(
+                System.nanoTime() - start,
+                latencies,
+                notFound.get(),
+                mismatches.get(),
+                errors.get());
+    }
+
+    private static void report(int iteration, int clients, Result result) {
+        long[] latencies = result.latencies().clone();
+        Arrays.sort(latencies);
+        int count = latencies.length;
+        System.out.printf(
+                Locale.ROOT,
+                "Iteration %d (%s caches, %d clients): %d requests in %d ms, %.1f requests/s;"
+                        + " latency p50 %d us, p99 %d us, max %d us; %.1f%% not found,"
+                        + " %d status mismatches, %d errors%n",
+                iteration,
+                iteration == 1 ? "cold" : "warm",
+                clients,
+                count,
+                TimeUnit.NANOSECONDS.toMillis(result.durationNanos()),
+                count * 1e9 / result.durationNanos(),
+                TimeUnit.NANOSECONDS.toMicros(percentile(latencies, 0.5)),
+                TimeUnit.NANOSECONDS.toMicros(percentile(latencies, 0.99)),
+                TimeUnit.NANOSECONDS.toMicros(count == 0 ? 0 : latencies[count - 1]),
+                percentage(result.notFound(), count),
+                result.mismatches(),
+                result.errors());
+    }
+
+    private static long percentile(long[] sortedValues, double percentile) {
+        if (sortedValues.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(sortedValues.length * percentile) - 1;
+        return sortedValues[Math.max(0, index)];
+    }
+
+    private static double percentage(long count, int total) {
+        return total == 0 ? 0 : count * 100.0 / total;
+    }
+}
@@ -0,0 +1,61 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+
+/** Identifies an artifact by the coordinates encoded in a repository path. */
+record ArtifactKey(
+        String groupId, String artifactId, String version, String classifier, String extension) {
+    Artifact toArtifact() {
+        return new DefaultArtifact(groupId, artifactId, classifier, extension, version);
+    }
+
+    /** Get the path of the artifact in a repository layout. */
+    String toPath() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(groupId.replace('.', '/'))
+                .append('/')
+                .append(artifactId)
+                .append('/')
+                .append(version)
+                .append('/')
+                .append(artifactId)
+                .append('-')
+                .append(version);
+        if (classifier != null) {
+            buffer.append('-').append(classifier);
+        }
+        buffer.append('.').append(extension);
+        return buffer.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(groupId).append(':').append(artifactId).append(':').append(extension);
+        if (classifier != null) {
+            buffer.append(':').append(classifier);
+        }
+        buffer.append(':').append(version);
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,151 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size bounded LRU cache with optional expiration of entries. Lookups are cheap compared to the
+ * resolver calls they avoid, so access is simply synchronized on the underlying map.
+ */
+final class BoundedCache<K, V> {
+    private record CacheEntry<V>(V value, long expiry) {}
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<K, CacheEntry<V>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize the maximum number of entries; 0 disables the cache
+     * @param ttl the time after which an entry expires; 0 means that entries never expire
+     * @param unit the unit of {@code ttl}
+     */
+    BoundedCache(int maxSize, long ttl, TimeUnit unit) {
+        this.maxSize = maxSize;
+        ttlNanos = unit.toNanos(ttl);
+        entries =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                        if (size() > BoundedCache.this.maxSize) {
+                            evictions.increment();
+                            return true;
+                        } else {
+                            return false;
+                        }
+                    }
+                };
+    }
+
+    BoundedCache(int maxSize) {
+        this(maxSize, 0, TimeUnit.SECONDS);
+    }
+
+    V get(K key) {
+        CacheEntry<V> entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && ttlNanos != 0 && System.nanoTime() - entry.expiry() > 0) {
+                entries.remove(key);
+                evictions.increment();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        } else {
+            hits.increment();
+            return entry.value();
+        }
+    }
+
+    /** Determine whether the cache contains the given key, without affecting the statistics. */
+    boolean contains(K key) {
+        synchronized (entries) {
+            CacheEntry<V> entry = entries.get(key);
+            return entry != null && (ttlNanos == 0 || System.nanoTime() - entry.expiry() <= 0);
+        }
+    }
+
+    /**
+     * Get the value for the given key without affecting the statistics.
+     *
+     * @return the value, or {@code null} if the cache doesn't contain the key
+     */
+    V peek(K key) {
+        synchronized (entries) {
+            CacheEntry<V> entry = entries.get(key);
+            return entry != null && (ttlNanos == 0 || System.nanoTime() - entry.expiry() <= 0)
+                    ? entry.value()
+                    : null;
+        }
+    }
+
+    void put(K key, V value) {
+        if (maxSize == 0) {
+            return;
+        }
+        CacheEntry<V> entry =
+                new CacheEntry<>(value, ttlNanos == 0 ? 0 : System.nanoTime() + ttlNanos);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    void remove(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%d entries, %d hits, %d misses, %d evictions",
+                size(), hits(), misses(), evictions());
+    }
+}
@@ -0,0 +1,61 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** The checksum algorithms supported by the proxy, identified by their file extension. */
+enum ChecksumAlgorithm {
+    MD5("md5", "MD5"),
+    SHA1("sha1", "SHA-1"),
+    SHA256("sha256", "SHA-256"),
+    SHA512("sha512", "SHA-512");
+
+    private final String extension;
+    private final String algorithm;
+
+    ChecksumAlgorithm(String extension, String algorithm) {
+        this.extension = extension;
+        this.algorithm = algorithm;
+    }
+
+    String getExtension() {
+        return extension;
+    }
+
+    MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException ex) {
+            // All of these algorithms are required to be supported by the JRE.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static ChecksumAlgorithm forExtension(String extension) {
+        for (ChecksumAlgorithm algorithm : values()) {
+            if (algorithm.extension.equals(extension)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+import org.apache.commons.codec.binary.Hex;
+
+/** The checksums of a given content for all {@link ChecksumAlgorithm}s. */
+final class Checksums {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final String[] values;
+
+    private Checksums(MessageDigest[] digests) {
+        values = new String[digests.length];
+        for (int i = 0; i < digests.length; i++) {
+            values[i] = Hex.encodeHexString(digests[i].digest(), false);
+        }
+    }
+
+    /**
+     * Create an instance from previously computed values.
+     *
+     * @param values the hex encoded checksums, in the order of {@link ChecksumAlgorithm#values()}
+     */
+    Checksums(String[] values) {
+        this.values = values.clone();
+    }
+
+    private static MessageDigest[] newMessageDigests() {
+        ChecksumAlgorithm[] algorithms = ChecksumAlgorithm.values();
+        MessageDigest[] digests = new MessageDigest[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            digests[i] = algorithms[i].newMessageDigest();
+        }
+        return digests;
+    }
+
+    static Checksums compute(byte[] content) {
+        MessageDigest[] digests = newMessageDigests();
+        for (MessageDigest digest : digests) {
+            digest.update(content);
+        }
+        return new Checksums(digests);
+    }
+
+    /** Compute the checksums of a file, reading its content only once. */
+    static Checksums compute(Path file) throws IOException {
+        MessageDigest[] digests = newMessageDigests();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int c;
+            while ((c = in.read(buffer)) != -1) {
+                for (MessageDigest digest : digests) {
+                    digest.update(buffer, 0, c);
+                }
+            }
+        }
+        return new Checksums(digests);
+    }
+
+    String get(ChecksumAlgorithm algorithm) {
+        return values[algorithm.ordinal()];
+    }
+}
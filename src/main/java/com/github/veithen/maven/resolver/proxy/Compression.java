@@ -0,0 +1,113 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Determines which responses are sent gzip compressed. Only resources whose content is kept in
+ * memory are compressed, so that the compressed form can be computed once and reused.
+ */
+final class Compression {
+    /** Extensions of files that are already compressed and that are never compressed again. */
+    private static final Set<String> ARCHIVE_EXTENSIONS =
+            Set.of("jar", "war", "ear", "rar", "aar", "zip", "gz", "tgz", "bz2", "xz", "zst");
+
+    static final Compression DISABLED = new Compression(Integer.MAX_VALUE, List.of());
+
+    private final int minSize;
+    private final Set<String> extensions = new HashSet<>();
+
+    /**
+     * Constructor.
+     *
+     * @param minSize the minimum size (in bytes) of a resource to be compressed
+     * @param extensions the extensions of the files to compress; archive types are ignored
+     */
+    Compression(int minSize, List<String> extensions) {
+        this.minSize = minSize;
+        for (String extension : extensions) {
+            extension = extension.trim().toLowerCase(Locale.ROOT);
+            if (!extension.isEmpty() && !ARCHIVE_EXTENSIONS.contains(extension)) {
+                this.extensions.add(extension);
+            }
+        }
+    }
+
+    /**
+     * Determine whether a resource is eligible for compression.
+     *
+     * @param name the file name of the resource, or {@code null} if unknown
+     * @param length the length of the resource
+     */
+    boolean isCompressible(String name, long length) {
+        if (name == null || length < minSize) {
+            return false;
+        }
+        int dot = name.lastIndexOf('.');
+        return dot != -1 && extensions.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /** Determine whether the client accepts gzip compressed responses. */
+    static boolean acceptsGzip(HttpServletRequest request) {
+        String header = request.getHeader("Accept-Encoding");
+        if (header == null) {
+            return false;
+        }
+        for (String coding : header.split(",")) {
+            String[] params = coding.split(";");
+            String name = params[0].trim();
+            if (name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip")) {
+                for (int i = 1; i < params.length; i++) {
+                    String param = params[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(param.substring(2)) > 0;
+                        } catch (NumberFormatException ex) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        } catch (IOException ex) {
+            // Can't happen with a ByteArrayOutputStream.
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+}
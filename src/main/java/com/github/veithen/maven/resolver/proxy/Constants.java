@@ -21,6 +21,10 @@ package com.github.veithen.maven.resolver.proxy;
 
 final class Constants {
     static final String SERVER_KEY = Constants.class.getPackage().getName() + ".SERVER";
+    static final String CONTEXT_KEY = Constants.class.getPackage().getName() + ".CONTEXT";
+    static final String SERVLET_KEY = Constants.class.getPackage().getName() + ".SERVLET";
+    static final String PREFETCHER_KEY = Constants.class.getPackage().getName() + ".PREFETCHER";
+    static final String TIMELINE_KEY = Constants.class.getPackage().getName() + ".TIMELINE";
 
     private Constants() {}
 }
@@ -0,0 +1,355 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the content of files served by the proxy. Small files are kept on the heap within a given
+ * memory budget. Larger files are memory mapped; the number of mappings is bounded and mappings are
+ * reference counted so that they can be unmapped as soon as they are evicted and no longer used by
+ * a pending response. In both tiers, entries are evicted in LRU order and invalidated if the size
+ * or last modification time of the file changes.
+ */
+final class ContentCache {
+    private static final Logger log = LoggerFactory.getLogger(ContentCache.class);
+
+    private static final MethodHandle INVOKE_CLEANER = lookupInvokeCleaner();
+
+    /** A buffer obtained from the cache. It must be released once it is no longer used. */
+    static final class Content {
+        private final ByteBuffer buffer;
+        private final Mapping mapping;
+
+        Content(ByteBuffer buffer) {
+            this(buffer, null);
+        }
+
+        private Content(ByteBuffer buffer, Mapping mapping) {
+            this.buffer = buffer;
+            this.mapping = mapping;
+        }
+
+        ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        /**
+         * Create a slice of this content. The slice shares the reference of this content, i.e.
+         * only one of them must be released.
+         */
+        Content slice(int index, int length) {
+            return new Content(buffer.slice(index, length), mapping);
+        }
+
+        void release() {
+            if (mapping != null) {
+                mapping.release();
+            }
+        }
+    }
+
+    private static final class HeapEntry {
+        private final long size;
+        private final long lastModified;
+        private final byte[] content;
+        // Computed on demand; guarded by the map containing the entry.
+        private byte[] compressed;
+
+        HeapEntry(long size, long lastModified, byte[] content) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.content = content;
+        }
+
+        long weight() {
+            return content.length + (compressed == null ? 0 : compressed.length);
+        }
+    }
+
+    private static final class Mapping {
+        private final long size;
+        private final long lastModified;
+        private final MappedByteBuffer buffer;
+        // One reference is held by the cache itself until the mapping is evicted.
+        private int refCount = 1;
+
+        Mapping(long size, long lastModified, MappedByteBuffer buffer) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.buffer = buffer;
+        }
+
+        synchronized boolean acquire() {
+            if (refCount == 0) {
+                return false;
+            }
+            refCount++;
+            return true;
+        }
+
+        void release() {
+            boolean unmap;
+            synchronized (this) {
+                unmap = --refCount == 0;
+            }
+            if (unmap) {
+                unmap(buffer);
+            }
+        }
+    }
+
+    private final long heapCapacity;
+    private final long maxHeapFileSize;
+    private final int maxMappings;
+    private final Map<Path, HeapEntry> heapEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long heapSize;
+    private final Map<Path, Mapping> mappings = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder heapHits = new LongAdder();
+    private final LongAdder heapMisses = new LongAdder();
+    private final LongAdder heapEvictions = new LongAdder();
+    private final LongAdder mappingHits = new LongAdder();
+    private final LongAdder mappingMisses = new LongAdder();
+    private final LongAdder mappingEvictions = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param heapCapacity the maximum total size (in bytes) of the files kept on the heap
+     * @param maxHeapFileSize the maximum size (in bytes) of a file kept on the heap
+     * @param maxMappings the maximum number of memory mapped files
+     */
+    ContentCache(long heapCapacity, long maxHeapFileSize, int maxMappings) {
+        this.heapCapacity = heapCapacity;
+        this.maxHeapFileSize = Math.min(maxHeapFileSize, heapCapacity);
+        this.maxMappings = maxMappings;
+    }
+
+    private static MethodHandle lookupInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(
+                            unsafeClass,
+                            "invokeCleaner",
+                            MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            log.debug("Mapped buffers can't be unmapped explicitly", ex);
+            return null;
+        }
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        // If explicit unmapping isn't supported, the mapping is released when the buffer is
+        // garbage collected.
+        if (INVOKE_CLEANER != null) {
+            try {
+                INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+            } catch (Throwable ex) {
+                log.debug("Failed to unmap buffer", ex);
+            }
+        }
+    }
+
+    /**
+     * Get the content of a file with the given size and last modification time.
+     *
+     * @throws IOException if the file can't be read or its size has changed, in which case the
+     *     content would no longer match the {@code Content-Length} of the response
+     */
+    Content get(Path file, long size, long lastModified) throws IOException {
+        if (size <= maxHeapFileSize) {
+            byte[] content = getHeapEntry(file, size, lastModified).content;
+            return new Content(ByteBuffer.wrap(content).asReadOnlyBuffer());
+        }
+        Mapping mapping = getMapping(file, size, lastModified);
+        return new Content(mapping.buffer.duplicate(), mapping);
+    }
+
+    /** Determine whether files of the given size are kept on the heap. */
+    boolean isHeapCached(long size) {
+        return size <= maxHeapFileSize;
+    }
+
+    /**
+     * Get the gzip compressed content of a file that is kept on the heap. The compressed content is
+     * computed once and then cached together with the uncompressed content.
+     */
+    Content getCompressed(Path file, long size, long lastModified) throws IOException {
+        HeapEntry entry = getHeapEntry(file, size, lastModified);
+        byte[] compressed;
+        synchronized (heapEntries) {
+            compressed = entry.compressed;
+        }
+        if (compressed == null) {
+            compressed = Compression.gzip(entry.content);
+            synchronized (heapEntries) {
+                if (entry.compressed == null && heapEntries.get(file) == entry) {
+                    entry.compressed = compressed;
+                    heapSize += compressed.length;
+                    evictHeapEntries();
+                }
+            }
+        }
+        return new Content(ByteBuffer.wrap(compressed).asReadOnlyBuffer());
+    }
+
+    private HeapEntry getHeapEntry(Path file, long size, long lastModified) throws IOException {
+        synchronized (heapEntries) {
+            HeapEntry entry = heapEntries.get(file);
+            if (entry != null) {
+                if (entry.size == size && entry.lastModified == lastModified) {
+                    heapHits.increment();
+                    return entry;
+                }
+                heapEntries.remove(file);
+                heapSize -= entry.weight();
+            }
+        }
+        heapMisses.increment();
+        HeapEntry entry = new HeapEntry(size, lastModified, Files.readAllBytes(file));
+        if (entry.content.length != size) {
+            throw modifiedConcurrently(file);
+        }
+        synchronized (heapEntries) {
+            HeapEntry previous = heapEntries.put(file, entry);
+            if (previous != null) {
+                heapSize -= previous.weight();
+            }
+            heapSize += entry.weight();
+            evictHeapEntries();
+        }
+        return entry;
+    }
+
+    private static IOException modifiedConcurrently(Path file) {
+        return new IOException(file + " has been modified while it was being served");
+    }
+
+    private void evictHeapEntries() {
+        Iterator<HeapEntry> it = heapEntries.values().iterator();
+        while (heapSize > heapCapacity && it.hasNext()) {
+            HeapEntry eldest = it.next();
+            it.remove();
+            heapSize -= eldest.weight();
+            heapEvictions.increment();
+        }
+    }
+
+    /** Get a mapping for the given file and acquire a reference to it. */
+    private Mapping getMapping(Path file, long size, long lastModified) throws IOException {
+        synchronized (mappings) {
+            Mapping mapping = mappings.get(file);
+            if (mapping != null) {
+                if (mapping.size == size
+                        && mapping.lastModified == lastModified
+                        && mapping.acquire()) {
+                    mappingHits.increment();
+                    return mapping;
+                }
+                mappings.remove(file);
+                mapping.release();
+            }
+        }
+        mappingMisses.increment();
+        Mapping mapping;
+        try (FileChannel channel = FileChannel.open(file)) {
+            if (channel.size() != size) {
+                throw modifiedConcurrently(file);
+            }
+            mapping = new Mapping(size, lastModified, channel.map(MapMode.READ_ONLY, 0, size));
+        }
+        mapping.acquire();
+        synchronized (mappings) {
+            Mapping previous = mappings.put(file, mapping);
+            if (previous != null) {
+                previous.release();
+            }
+            Iterator<Mapping> it = mappings.values().iterator();
+            while (mappings.size() > maxMappings && it.hasNext()) {
+                Mapping eldest = it.next();
+                it.remove();
+                eldest.release();
+                mappingEvictions.increment();
+            }
+        }
+        return mapping;
+    }
+
+    /** Evict all entries. */
+    void clear() {
+        synchronized (heapEntries) {
+            heapEntries.clear();
+            heapSize = 0;
+        }
+        synchronized (mappings) {
+            for (Mapping mapping : mappings.values()) {
+                mapping.release();
+            }
+            mappings.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        int heapCount;
+        long currentHeapSize;
+        synchronized (heapEntries) {
+            heapCount = heapEntries.size();
+            currentHeapSize = heapSize;
+        }
+        int mappingCount;
+        synchronized (mappings) {
+            mappingCount = mappings.size();
+        }
+        return String.format(
+                "heap: %d files (%d bytes), %d hits, %d misses, %d evictions;"
+                        + " mapped: %d files, %d hits, %d misses, %d evictions",
+                heapCount,
+                currentHeapSize,
+                heapHits.sum(),
+                heapMisses.sum(),
+                heapEvictions.sum(),
+                mappingCount,
+                mappingHits.sum(),
+                mappingMisses.sum(),
+                mappingEvictions.sum());
+    }
+}
@@ -0,0 +1,112 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the checksums of files served by the proxy so that they are computed at most once. Entries
+ * are validated against the size and last modification time of the file. The number of entries is
+ * bounded; the least recently used ones are evicted first.
+ */
+final class DigestIndex {
+    private record Entry(long size, long lastModified, Checksums checksums) {}
+
+    private final BoundedCache<Path, Entry> entries;
+    private final InFlightTable<Path, Entry> computations = new InFlightTable<>();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize the maximum number of files whose checksums are kept
+     */
+    DigestIndex(int maxSize) {
+        entries = new BoundedCache<>(maxSize);
+    }
+
+    /**
+     * Get the checksums of a file if they are already known.
+     *
+     * @return the checksums, or {@code null} if they need to be computed
+     */
+    Checksums getCachedChecksums(File file) throws IOException {
+        Path path = file.toPath();
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        return getCachedChecksums(path, attrs.size(), attrs.lastModifiedTime().toMillis());
+    }
+
+    /** Get the checksums of a file, computing them if necessary. */
+    Checksums getChecksums(File file) throws IOException {
+        Path path = file.toPath();
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        Checksums checksums = getCachedChecksums(path, size, lastModified);
+        if (checksums != null) {
+            return checksums;
+        }
+        return computations
+                .execute(
+                        path,
+                        () -> {
+                            Events.ChecksumComputation event = new Events.ChecksumComputation();
+                            event.begin();
+                            Entry newEntry = new Entry(size, lastModified, Checksums.compute(path));
+                            event.end();
+                            if (event.shouldCommit()) {
+                                event.file = path.toString();
+                                event.size = size;
+                                event.commit();
+                            }
+                            entries.put(path, newEntry);
+                            return newEntry;
+                        })
+                .checksums();
+    }
+
+    /** Add checksums obtained from another source, e.g. the persistent index. */
+    void put(Path path, long size, long lastModified, Checksums checksums) {
+        entries.put(path, new Entry(size, lastModified, checksums));
+    }
+
+    /** Get the checksums of a file with known attributes if they are already known. */
+    Checksums getCachedChecksums(Path path, long size, long lastModified) {
+        Entry entry = entries.get(path);
+        if (entry != null && entry.size() == size && entry.lastModified() == lastModified) {
+            hits.increment();
+            return entry.checksums();
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%d files, %d hits, %d evictions, %s",
+                entries.size(), hits.sum(), entries.evictions(), computations);
+    }
+}
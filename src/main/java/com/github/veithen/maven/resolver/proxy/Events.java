@@ -0,0 +1,216 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events for the stages of request processing. Fields are only populated if
+ * {@link Event#shouldCommit()} returns {@code true}. The events emitted for every request are only
+ * created if their type is enabled in a recording (see the {@code begin} methods), so that the
+ * request path doesn't allocate when no recording is active.
+ */
+final class Events {
+    private static final String PREFIX = "com.github.veithen.maven.resolver.proxy.";
+
+    private Events() {}
+
+    @Name(PREFIX + "Request")
+    @Label("Request")
+    @Description("Processing of a request, from its reception until the response is complete")
+    @Category({"Maven", "Resolver Proxy"})
+    @StackTrace(false)
+    static final class Request extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Build")
+        @Description("The invoked build that sent the request")
+        String build;
+
+        @Label("Kind")
+        String kind;
+
+        @Label("Source")
+        String source;
+
+        @Label("Status")
+        int status;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name(PREFIX + "Lookup")
+    @Label("Lookup")
+    @Description("Attempt to answer a request from the indexes and caches")
+    @Category({"Maven", "Resolver Proxy"})
+    @StackTrace(false)
+    static final class Lookup extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Hit")
+        boolean hit;
+    }
+
+    @Name(PREFIX + "ArtifactResolution")
+    @Label("Artifact Resolution")
+    @Description("Invocation of the artifact resolver")
+    @Category({"Maven", "Resolver Proxy"})
+    @StackTrace(false)
+    static final class ArtifactResolution extends Event {
+        @Label("Artifact")
+        String artifact;
+
+        @Label("Resolved")
+        boolean resolved;
+    }
+
+    @Name(PREFIX + "MetadataResolution")
+    @Label("Metadata Resolution")
+    @Description("Resolution of the available versions of an artifact")
+    @Category({"Maven", "Resolver Proxy"})
+    @StackTrace(false)
+    static final class MetadataResolution extends Event {
+        @Label("Key")
+        String key;
+
+        @Label("Versions")
+        int versions;
+    }
+
+    @Name(PREFIX + "ChecksumComputation")
+    @Label("Checksum Computation")
+    @Description("Computation of the checksums of a file")
+    @Category({"Maven", "Resolver Proxy"})
+    @StackTrace(false)
+    static final class ChecksumComputation extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+
+    @Name(PREFIX + "Transfer")
+    @Label("Transfer")
+    @Description("Sending of a response")
+    @Category({"Maven", "Resolver Proxy"})
+    @StackTrace(false)
+    static final class Transfer extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    private static final EventType REQUEST = EventType.getEventType(Request.class);
+    private static final EventType LOOKUP = EventType.getEventType(Lookup.class);
+    private static final EventType TRANSFER = EventType.getEventType(Transfer.class);
+
+    /** Begin a {@link Request} event, or return {@code null} if the event type is disabled. */
+    static Request beginRequest() {
+        if (!REQUEST.isEnabled()) {
+            return null;
+        }
+        Request event = new Request();
+        event.begin();
+        return event;
+    }
+
+    static void commitRequest(
+            Request event,
+            String path,
+            String build,
+            Metrics.Kind kind,
+            Metrics.Source source,
+            int status,
+            long bytes) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.build = build;
+            event.kind = kind.name();
+            event.source = source.name();
+            event.status = status;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    /** Begin a {@link Lookup} event, or return {@code null} if the event type is disabled. */
+    static Lookup beginLookup() {
+        if (!LOOKUP.isEnabled()) {
+            return null;
+        }
+        Lookup event = new Lookup();
+        event.begin();
+        return event;
+    }
+
+    static void commitLookup(Lookup event, String path, boolean hit) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.hit = hit;
+            event.commit();
+        }
+    }
+
+    /** Begin a {@link Transfer} event, or return {@code null} if the event type is disabled. */
+    static Transfer beginTransfer() {
+        if (!TRANSFER.isEnabled()) {
+            return null;
+        }
+        Transfer event = new Transfer();
+        event.begin();
+        return event;
+    }
+
+    static void commitTransfer(Transfer event, String path, long bytes) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+}
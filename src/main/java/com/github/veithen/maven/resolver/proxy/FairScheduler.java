@@ -0,0 +1,295 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes resolution work with a fixed number of threads, scheduling tasks from different invoked
+ * builds with weighted fair queuing, so that a build that requests many artifacts at once doesn't
+ * stall the other builds. Each task is tagged with a virtual finish time derived from the weight of
+ * its build; idle threads pick the queued task with the lowest tag among the builds that are below
+ * their concurrency limit. Since the cost of a resolution isn't known in advance, every task counts
+ * as one unit of work, and the virtual time is the finish tag of the task started last
+ * (self-clocked fair queuing). Tasks from the same build are executed in submission order.
+ */
+final class FairScheduler {
+    private static final Logger log = LoggerFactory.getLogger(FairScheduler.class);
+
+    /** The build to which requests without build identification are attributed. */
+    static final String UNKNOWN_BUILD = "unknown";
+
+    private record Task(Runnable runnable, Runnable onRejected, double finishTag, long enqueued) {}
+
+    private static final class BuildQueue {
+        final String build;
+        final double weight;
+        final Deque<Task> tasks = new ArrayDeque<>();
+        int running;
+        double lastFinishTag;
+        long executed;
+        long totalQueueNanos;
+        long maxQueueNanos;
+
+        BuildQueue(String build, double weight) {
+            this.build = build;
+            this.weight = weight;
+        }
+    }
+
+    private final int maxConcurrencyPerBuild;
+    private final Map<String, Integer> weights;
+    private final Map<String, BuildQueue> queues = new LinkedHashMap<>();
+    private final Thread[] threads;
+    private double virtualTime;
+    private boolean shutdown;
+    /** The number of tasks submitted while their build was at its concurrency limit. */
+    private long throttled;
+
+    /**
+     * Constructor.
+     *
+     * @param threads the number of threads
+     * @param maxConcurrencyPerBuild the maximum number of tasks of a single build that are executed
+     *     concurrently; 0 means no limit other than the number of threads
+     * @param weights the weights of builds, keyed by a suffix of the build identifier; if several
+     *     keys match, the longest one is used; builds that don't match any of the keys have weight
+     *     1
+     */
+    FairScheduler(int threads, int maxConcurrencyPerBuild, Map<String, Integer> weights) {
+        this.maxConcurrencyPerBuild =
+                maxConcurrencyPerBuild <= 0 ? threads : Math.min(maxConcurrencyPerBuild, threads);
+        this.weights = Map.copyOf(weights);
+        this.threads = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(this::work, "resolver-proxy-resolver-" + (i + 1));
+            thread.setDaemon(true);
+            this.threads[i] = thread;
+            thread.start();
+        }
+    }
+
+    /** Get the weight of a build, using the longest matching suffix. */
+    private double getWeight(String build) {
+        String match = null;
+        for (String suffix : weights.keySet()) {
+            if (build.endsWith(suffix) && (match == null || suffix.length() > match.length())) {
+                match = suffix;
+            }
+        }
+        return match == null ? 1 : Math.max(weights.get(match), 1);
+    }
+
+    /**
+     * Submit a task.
+     *
+     * @param build the identifier of the build on behalf of which the task is executed, or {@code
+     *     null} if unknown
+     * @param onRejected invoked instead of the task if the scheduler is shut down before the task
+     *     is executed; if the scheduler has already been shut down, it is invoked by the calling
+     *     thread
+     */
+    void execute(String build, Runnable runnable, Runnable onRejected) {
+        synchronized (this) {
+            if (!shutdown) {
+                BuildQueue queue =
+                        queues.computeIfAbsent(
+                                build == null ? UNKNOWN_BUILD : build,
+                                b -> new BuildQueue(b, getWeight(b)));
+                if (queue.running >= maxConcurrencyPerBuild) {
+                    throttled++;
+                }
+                double finishTag = Math.max(virtualTime, queue.lastFinishTag) + 1 / queue.weight;
+                queue.lastFinishTag = finishTag;
+                queue.tasks.add(new Task(runnable, onRejected, finishTag, System.nanoTime()));
+                notify();
+                return;
+            }
+        }
+        reject(onRejected);
+    }
+
+    private static void reject(Runnable onRejected) {
+        try {
+            onRejected.run();
+        } catch (RuntimeException ex) {
+            log.debug("Failed to reject task", ex);
+        }
+    }
+
+    /**
+     * Select the next task to execute.
+     *
+     * @return the queue of the selected task, or {@code null} if there is no eligible task
+     */
+    private BuildQueue select() {
+        BuildQueue selected = null;
+        for (BuildQueue queue : queues.values()) {
+            Task task = queue.tasks.peek();
+            if (task == null) {
+                continue;
+            }
+            if (queue.running >= maxConcurrencyPerBuild) {
+                continue;
+            }
+            if (selected == null || task.finishTag() < selected.tasks.peek().finishTag()) {
+                selected = queue;
+            }
+        }
+        return selected;
+    }
+
+    private void work() {
+        while (true) {
+            BuildQueue queue;
+            Task task;
+            synchronized (this) {
+                while (true) {
+                    if (shutdown) {
+                        return;
+                    }
+                    queue = select();
+                    if (queue != null) {
+                        break;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+                task = queue.tasks.poll();
+                queue.running++;
+                virtualTime = Math.max(virtualTime, task.finishTag());
+                long queueNanos = System.nanoTime() - task.enqueued();
+                queue.executed++;
+                queue.totalQueueNanos += queueNanos;
+                queue.maxQueueNanos = Math.max(queue.maxQueueNanos, queueNanos);
+            }
+            try {
+                task.runnable().run();
+            } catch (RuntimeException ex) {
+                log.error("Unexpected exception in resolver thread", ex);
+            } finally {
+                synchronized (this) {
+                    queue.running--;
+                    // The build may have been at its concurrency limit.
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /** Stop the threads and reject the queued tasks. */
+    void shutdownNow() {
+        List<Task> rejected = new ArrayList<>();
+        synchronized (this) {
+            shutdown = true;
+            for (BuildQueue queue : queues.values()) {
+                rejected.addAll(queue.tasks);
+                queue.tasks.clear();
+            }
+            notifyAll();
+        }
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Task task : rejected) {
+            reject(task.onRejected());
+        }
+    }
+
+    /** Get the queue time statistics, one line per build. */
+    synchronized String getQueueStatistics() {
+        StringBuilder buffer = new StringBuilder();
+        for (BuildQueue queue : queues.values()) {
+            if (buffer.length() > 0) {
+                buffer.append('\n');
+            }
+            buffer.append(
+                    String.format(
+                            "%s (weight %.0f): %d tasks, mean queue time %d ms, max %d ms",
+                            queue.build,
+                            queue.weight,
+                            queue.executed,
+                            queue.executed == 0
+                                    ? 0
+                                    : TimeUnit.NANOSECONDS.toMillis(
+                                            queue.totalQueueNanos / queue.executed),
+                            TimeUnit.NANOSECONDS.toMillis(queue.maxQueueNanos)));
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Get the queue time statistics as a JSON array, with one object per build, in the format used
+     * by {@link Metrics#toJson(String)}.
+     */
+    synchronized String getQueueStatisticsJson() {
+        StringBuilder buffer = new StringBuilder("[");
+        boolean first = true;
+        for (BuildQueue queue : queues.values()) {
+            buffer.append(first ? "\n" : ",\n");
+            first = false;
+            buffer.append(
+                    String.format(
+                            Locale.ROOT,
+                            "    {\"build\": \"%s\", \"weight\": %.0f, \"tasks\": %d,"
+                                    + " \"meanQueueMicros\": %d, \"maxQueueMicros\": %d}",
+                            queue.build.replace("\\", "\\\\").replace("\"", "\\\""),
+                            queue.weight,
+                            queue.executed,
+                            queue.executed == 0
+                                    ? 0
+                                    : TimeUnit.NANOSECONDS.toMicros(
+                                            queue.totalQueueNanos / queue.executed),
+                            TimeUnit.NANOSECONDS.toMicros(queue.maxQueueNanos)));
+        }
+        buffer.append("\n  ]");
+        return buffer.toString();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long executed = 0;
+        long totalQueueNanos = 0;
+        for (BuildQueue queue : queues.values()) {
+            executed += queue.executed;
+            totalQueueNanos += queue.totalQueueNanos;
+        }
+        return String.format(
+                "%d threads, %d builds, %d tasks, mean queue time %d ms, %d tasks throttled",
+                threads.length,
+                queues.size(),
+                executed,
+                executed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalQueueNanos / executed),
+                throttled);
+    }
+}
@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent executions of the same task. The first caller for a given key executes the
+ * task; callers arriving while that execution is in progress wait for it to complete and receive
+ * the same result (or exception).
+ */
+final class InFlightTable<K, V> {
+    interface Task<V, E extends Exception> {
+        V execute() throws E;
+    }
+
+    /**
+     * An execution registered with {@link #begin(Object)}. If the caller is the owner, it must
+     * complete the execution with {@link #complete(Object)} or {@link #fail(Throwable)}; otherwise
+     * it can wait for the result with {@link #await()}.
+     */
+    final class Execution {
+        private final K key;
+        private final CompletableFuture<V> future;
+        private final boolean owner;
+
+        Execution(K key, CompletableFuture<V> future, boolean owner) {
+            this.key = key;
+            this.future = future;
+            this.owner = owner;
+        }
+
+        boolean isOwner() {
+            return owner;
+        }
+
+        void complete(V result) {
+            future.complete(result);
+            inFlight.remove(key, future);
+        }
+
+        void fail(Throwable ex) {
+            future.completeExceptionally(ex);
+            inFlight.remove(key, future);
+        }
+
+        <E extends Exception> V await() throws E {
+            return InFlightTable.<V, E>await(future);
+        }
+    }
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    <E extends Exception> V execute(K key, Task<V, E> task) throws E {
+        Execution execution = begin(key);
+        if (!execution.isOwner()) {
+            return execution.<E>await();
+        }
+        try {
+            V result = task.execute();
+            execution.complete(result);
+            return result;
+        } catch (Throwable ex) {
+            execution.fail(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Register an execution for the given key, for callers that execute the tasks for several keys
+     * at once. The caller becomes the owner of the execution unless an execution for the same key
+     * is already in progress.
+     */
+    Execution begin(K key) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+            return new Execution(key, existing, false);
+        }
+        executions.increment();
+        return new Execution(key, future, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V, E extends Exception> V await(CompletableFuture<V> future) throws E {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw (E) cause;
+            }
+        }
+    }
+
+    long executions() {
+        return executions.sum();
+    }
+
+    long coalesced() {
+        return coalesced.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d executed, %d coalesced", executions(), coalesced());
+    }
+}
@@ -0,0 +1,267 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Places the artifacts served by the proxy directly into the local repository used by the invoked
+ * projects, so that later builds using that repository find them without going through the proxy.
+ * Files from the local repository of the proxy are hard linked if possible; other files (in
+ * particular artifacts from the reactor, which the build may still overwrite) are always copied.
+ * The {@code _remote.repositories} file and checksum files are written as Maven resolver would do
+ * after downloading the artifact.
+ *
+ * <p>Artifact and checksum files are written to a temporary file first and then atomically moved
+ * into place, so that concurrent builds reading the local repository never see partially written
+ * files. The {@code _remote.repositories} file is updated in place while holding a lock on it, in
+ * the same way as Maven resolver does, so that entries added concurrently by the invoked builds
+ * are not lost. Updates to a given directory of the local repository are serialized.
+ */
+final class LocalRepositorySeeder {
+    private static final Logger log = LoggerFactory.getLogger(LocalRepositorySeeder.class);
+
+    /** The ID of the repository in the settings file used by the invoked projects. */
+    private static final String REPOSITORY_ID = "resolver-proxy";
+
+    private static final String REMOTE_REPOSITORIES = "_remote.repositories";
+
+    private static final ChecksumAlgorithm[] CHECKSUM_ALGORITHMS = {
+        ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5
+    };
+
+    private final Path localRepository;
+    private final Path sourceRepository;
+    private final DigestIndex digestIndex;
+    private final ExecutorService executor;
+    private final Set<ArtifactKey> seeded = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<Path, Object> directoryLocks = new ConcurrentHashMap<>();
+    private final LongAdder linked = new LongAdder();
+    private final LongAdder copied = new LongAdder();
+    private final LongAdder upToDate = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param localRepository the local repository to seed, or {@code null} to disable seeding
+     * @param sourceRepository the local repository of the proxy; only files from that repository
+     *     are hard linked
+     * @param digestIndex used to compute the checksums of seeded artifacts
+     */
+    LocalRepositorySeeder(Path localRepository, Path sourceRepository, DigestIndex digestIndex) {
+        this.localRepository = localRepository;
+        this.sourceRepository = sourceRepository.toAbsolutePath().normalize();
+        this.digestIndex = digestIndex;
+        if (localRepository == null) {
+            executor = null;
+            return;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor =
+                Executors.newFixedThreadPool(
+                        2,
+                        runnable -> {
+                            Thread thread =
+                                    new Thread(
+                                            runnable,
+                                            "resolver-proxy-seeder-"
+                                                    + threadNumber.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    /** Seed the given artifact in the background, unless it has already been seeded. */
+    void seed(ArtifactKey artifact, File file) {
+        if (executor == null || !seeded.add(artifact)) {
+            return;
+        }
+        try {
+            executor.execute(
+                    () -> {
+                        try {
+                            doSeed(artifact, file.toPath());
+                        } catch (IOException | OverlappingFileLockException ex) {
+                            // OverlappingFileLockException: the file is locked by a build running
+                            // in this JVM.
+                            log.debug("Failed to seed {} into {}", artifact, localRepository, ex);
+                            failed.increment();
+                        }
+                    });
+        } catch (RejectedExecutionException ex) {
+            // The proxy is being stopped.
+        }
+    }
+
+    private void doSeed(ArtifactKey artifact, Path source) throws IOException {
+        Path target = localRepository.resolve(artifact.toPath());
+        Path directory = target.getParent();
+        Files.createDirectories(directory);
+        Checksums checksums = digestIndex.getChecksums(source.toFile());
+        synchronized (directoryLocks.computeIfAbsent(directory, key -> new Object())) {
+            if (isUpToDate(source, target)) {
+                upToDate.increment();
+            } else {
+                place(source, target);
+            }
+            for (ChecksumAlgorithm algorithm : CHECKSUM_ALGORITHMS) {
+                write(
+                        directory.resolve(target.getFileName() + "." + algorithm.getExtension()),
+                        checksums.get(algorithm));
+            }
+            updateRemoteRepositories(directory, target.getFileName().toString());
+        }
+    }
+
+    private static boolean isUpToDate(Path source, Path target) throws IOException {
+        if (!Files.exists(target)) {
+            return false;
+        }
+        if (Files.isSameFile(source, target)) {
+            return true;
+        }
+        BasicFileAttributes sourceAttributes =
+                Files.readAttributes(source, BasicFileAttributes.class);
+        BasicFileAttributes targetAttributes =
+                Files.readAttributes(target, BasicFileAttributes.class);
+        return sourceAttributes.size() == targetAttributes.size()
+                && sourceAttributes.lastModifiedTime().equals(targetAttributes.lastModifiedTime());
+    }
+
+    private static Path tempFile(Path target) {
+        return target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+    }
+
+    private void place(Path source, Path target) throws IOException {
+        Path temp = tempFile(target);
+        try {
+            if (!link(source, temp)) {
+                Files.copy(source, temp, StandardCopyOption.COPY_ATTRIBUTES);
+                copied.increment();
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** Attempt to hard link a file from the local repository of the proxy. */
+    private boolean link(Path source, Path link) {
+        if (!source.toAbsolutePath().normalize().startsWith(sourceRepository)) {
+            return false;
+        }
+        try {
+            Files.createLink(link, source);
+            linked.increment();
+            return true;
+        } catch (IOException | UnsupportedOperationException ex) {
+            // Hard links are not supported or the files are on different file systems.
+            return false;
+        }
+    }
+
+    private static void write(Path target, String content) throws IOException {
+        Path temp = tempFile(target);
+        try {
+            Files.writeString(temp, content, StandardCharsets.UTF_8);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void updateRemoteRepositories(Path directory, String fileName)
+            throws IOException {
+        String entry = fileName + ">" + REPOSITORY_ID + "=";
+        try (FileChannel channel =
+                        FileChannel.open(
+                                directory.resolve(REMOTE_REPOSITORIES),
+                                StandardOpenOption.READ,
+                                StandardOpenOption.WRITE,
+                                StandardOpenOption.CREATE);
+                FileLock lock = channel.lock()) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {}
+            List<String> lines =
+                    new ArrayList<>(
+                            new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8)
+                                    .lines()
+                                    .toList());
+            if (lines.contains(entry)) {
+                return;
+            }
+            if (lines.isEmpty()) {
+                lines.add(
+                        "#NOTE: This is a Maven Resolver internal implementation file, its format"
+                                + " can be changed without prior notice.");
+                lines.add("#" + new Date());
+            }
+            lines.add(entry);
+            channel.truncate(0);
+            channel.write(
+                    ByteBuffer.wrap(
+                            (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8)),
+                    0);
+        }
+    }
+
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (localRepository == null) {
+            return "disabled";
+        }
+        return String.format(
+                "%d linked, %d copied, %d up to date, %d failed",
+                linked.sum(), copied.sum(), upToDate.sum(), failed.sum());
+    }
+}
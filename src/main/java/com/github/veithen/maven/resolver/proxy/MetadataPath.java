@@ -0,0 +1,103 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.BiPredicate;
+
+/**
+ * The location of a {@code maven-metadata.xml} file in the repository layout. Depending on its
+ * level, the file contains the mapping of plugin prefixes for a plugin group, the available
+ * versions of an artifact or the snapshot versions for a given snapshot version of an artifact.
+ */
+record MetadataPath(MetadataPath.Level level, String groupId, String artifactId, String version) {
+    enum Level {
+        GROUP,
+        ARTIFACT,
+        VERSION,
+        UNSUPPORTED
+    }
+
+    private static final MetadataPath UNSUPPORTED =
+            new MetadataPath(Level.UNSUPPORTED, null, null, null);
+
+    /**
+     * Classify a metadata request. Since the repository layout is ambiguous, this relies on a few
+     * heuristics: the last segment is a version if it is a snapshot version, and a path is a group
+     * only if it is one of the known plugin groups. Release versions don't have version level
+     * metadata, and Maven doesn't request it; if the last segment is a known version of the
+     * artifact identified by the two segments before, the request is unsupported, so that it is
+     * answered with a 404 without invoking the resolver. Everything else is artifact level
+     * metadata. Note that the last segment can't be classified based on its first character:
+     * artifact IDs may start with a digit.
+     *
+     * @param directory the path of the directory containing the metadata file
+     * @param pluginGroups the known plugin groups
+     * @param knownVersions determines whether a version (second argument) is a known version of
+     *     an artifact identified by its {@code groupId:artifactId} key (first argument)
+     */
+    static MetadataPath parse(
+            String directory,
+            Set<String> pluginGroups,
+            BiPredicate<String, String> knownVersions) {
+        String[] segments = directory.split("/");
+        int count = segments.length;
+        String last = segments[count - 1];
+        if (last.isEmpty()) {
+            return UNSUPPORTED;
+        }
+        if (count >= 3 && last.endsWith("-SNAPSHOT")) {
+            return new MetadataPath(
+                    Level.VERSION, join(segments, count - 2), segments[count - 2], last);
+        }
+        if (count >= 3
+                && knownVersions.test(
+                        join(segments, count - 2) + ":" + segments[count - 2], last)) {
+            return UNSUPPORTED;
+        }
+        String groupId = join(segments, count);
+        if (pluginGroups.contains(groupId)) {
+            return new MetadataPath(Level.GROUP, groupId, null, null);
+        }
+        if (count >= 2) {
+            return new MetadataPath(Level.ARTIFACT, join(segments, count - 1), last, null);
+        }
+        return UNSUPPORTED;
+    }
+
+    private static String join(String[] segments, int count) {
+        return String.join(".", Arrays.asList(segments).subList(0, count));
+    }
+
+    /** Get the key identifying the metadata in the caches and indexes. */
+    String key() {
+        switch (level) {
+            case GROUP:
+                return groupId;
+            case ARTIFACT:
+                return groupId + ":" + artifactId;
+            case VERSION:
+                return groupId + ":" + artifactId + ":" + version;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request metrics, broken down by kind of request and by the source the response was obtained
+ * from. Latencies are recorded in histograms with power of two buckets (in microseconds). Recording
+ * only updates preallocated counters, so that it can stay enabled at all times.
+ */
+final class Metrics {
+    enum Kind {
+        ARTIFACT,
+        CHECKSUM,
+        METADATA
+    }
+
+    enum Source {
+        /** Served from the reactor index or the plugin index. */
+        INDEX,
+        /** Served from the proxy's caches or the persistent index. */
+        CACHE,
+        /** Resolved from the local repository. */
+        LOCAL_REPOSITORY,
+        /** Resolved from a remote repository. */
+        REMOTE,
+        /** Not found or rejected. */
+        NOT_FOUND
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final Source[] SOURCES = Source.values();
+
+    /** Bucket {@code i > 0} counts latencies in the range [2^(i-1), 2^i) microseconds. */
+    private static final int BUCKETS = 32;
+
+    private final LongAdder[] counts = new LongAdder[KINDS.length * SOURCES.length];
+    private final LongAdder[] latencies = new LongAdder[KINDS.length * SOURCES.length];
+    private final AtomicLongArray histograms =
+            new AtomicLongArray(KINDS.length * SOURCES.length * BUCKETS);
+    private final LongAdder bytesServed = new LongAdder();
+    private final LongAdder resolverNanos = new LongAdder();
+    private final LongAdder transferNanos = new LongAdder();
+
+    Metrics() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+            latencies[i] = new LongAdder();
+        }
+    }
+
+    private static int index(Kind kind, Source source) {
+        return kind.ordinal() * SOURCES.length + source.ordinal();
+    }
+
+    private static int bucket(long nanos) {
+        long micros = nanos / 1000;
+        return Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+    }
+
+    /**
+     * Record a completed request.
+     *
+     * @param latencyNanos the time between the start of the request and the completion of the
+     *     response
+     * @param bytes the number of content bytes sent
+     */
+    void recordRequest(Kind kind, Source source, long latencyNanos, long bytes) {
+        int index = index(kind, source);
+        counts[index].increment();
+        latencies[index].add(latencyNanos);
+        histograms.incrementAndGet(index * BUCKETS + bucket(latencyNanos));
+        bytesServed.add(bytes);
+    }
+
+    /** Record time spent in the resolver. */
+    void recordResolution(long nanos) {
+        resolverNanos.add(nanos);
+    }
+
+    /** Record time spent sending a response. */
+    void recordTransfer(long nanos) {
+        transferNanos.add(nanos);
+    }
+
+    /**
+     * Estimate a latency percentile from the histogram.
+     *
+     * @return the upper bound (in microseconds) of the bucket containing the percentile
+     */
+    private long percentile(int index, long count, double percentile) {
+        long threshold = (long) Math.ceil(count * percentile);
+        long cumulated = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            cumulated += histograms.get(index * BUCKETS + bucket);
+            if (cumulated >= threshold) {
+                return 1L << bucket;
+            }
+        }
+        return 1L << (BUCKETS - 1);
+    }
+
+    /**
+     * Format the metrics as JSON.
+     *
+     * @param builds the queue time statistics of the invoked builds, as a JSON array
+     */
+    String toJson(String builds) {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("{\n  \"requests\": [");
+        boolean first = true;
+        for (Kind kind : KINDS) {
+            for (Source source : SOURCES) {
+                int index = index(kind, source);
+                long count = counts[index].sum();
+                if (count == 0) {
+                    continue;
+                }
+                buffer.append(first ? "\n" : ",\n");
+                first = false;
+                buffer.append(
+                        String.format(
+                                Locale.ROOT,
+                                "    {\"kind\": \"%s\", \"source\": \"%s\", \"count\": %d,"
+                                        + " \"totalMicros\": %d, \"histogram\": [",
+                                kind.name().toLowerCase(Locale.ROOT),
+                                source.name().toLowerCase(Locale.ROOT),
+                                count,
+                                TimeUnit.NANOSECONDS.toMicros(latencies[index].sum())));
+                for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                    if (bucket > 0) {
+                        buffer.append(", ");
+                    }
+                    buffer.append(histograms.get(index * BUCKETS + bucket));
+                }
+                buffer.append("]}");
+            }
+        }
+        buffer.append(
+                String.format(
+                        Locale.ROOT,
+                        "\n  ],\n  \"builds\": %s,\n  \"bytesServed\": %d,\n"
+                                + "  \"resolverMicros\": %d,\n  \"transferMicros\": %d\n}\n",
+                        builds,
+                        bytesServed.sum(),
+                        TimeUnit.NANOSECONDS.toMicros(resolverNanos.sum()),
+                        TimeUnit.NANOSECONDS.toMicros(transferNanos.sum())));
+        return buffer.toString();
+    }
+
+    /** Format the metrics as a table, one line per kind of request and source. */
+    String toTable() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(
+                String.format(
+                        Locale.ROOT,
+                        "%-9s %-16s %8s %10s %10s %10s %10s",
+                        "Kind",
+                        "Source",
+                        "Count",
+                        "Mean (us)",
+                        "p50 (us)",
+                        "p90 (us)",
+                        "p99 (us)"));
+        for (Kind kind : KINDS) {
+            for (Source source : SOURCES) {
+                int index = index(kind, source);
+                long count = counts[index].sum();
+                if (count == 0) {
+                    continue;
+                }
+                buffer.append('\n')
+                        .append(
+                                String.format(
+                                        Locale.ROOT,
+                                        "%-9s %-16s %8d %10d %10d %10d %10d",
+                                        kind.name().toLowerCase(Locale.ROOT),
+                                        source.name().toLowerCase(Locale.ROOT),
+                                        count,
+                                        TimeUnit.NANOSECONDS.toMicros(
+                                                latencies[index].sum() / count),
+                                        percentile(index, count, 0.5),
+                                        percentile(index, count, 0.9),
+                                        percentile(index, count, 0.99)));
+            }
+        }
+        buffer.append(
+                String.format(
+                        Locale.ROOT,
+                        "\n%d bytes served, %d ms in resolver, %d ms sending responses",
+                        bytesServed.sum(),
+                        TimeUnit.NANOSECONDS.toMillis(resolverNanos.sum()),
+                        TimeUnit.NANOSECONDS.toMillis(transferNanos.sum())));
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,467 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.maven.artifact.ArtifactUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists resolution results across builds in an append-only file. Each record maps an artifact
+ * to its resolved file (with size, last modification time and, if known, checksums) or a metadata
+ * key to the rendered metadata. Later records supersede earlier ones. The file is memory mapped
+ * and parsed on first use. Artifact entries are validated against the current attributes of the
+ * file when they are looked up; metadata entries expire after a configurable age. Snapshot
+ * artifacts, version level (i.e. snapshot) metadata and negative metadata results are not
+ * persisted, so that later builds still see new snapshots and newly deployed versions.
+ */
+final class PersistentIndex {
+    private static final Logger log = LoggerFactory.getLogger(PersistentIndex.class);
+
+    private static final int MAGIC = 0x52504958;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte ARTIFACT = 1;
+    private static final byte METADATA = 2;
+
+    /** Compact the file on close if it contains more than this many superseded records. */
+    private static final int COMPACTION_THRESHOLD = 1000;
+
+    static final PersistentIndex DISABLED = new PersistentIndex(null, 0, TimeUnit.SECONDS);
+
+    /** A resolved artifact, validated against the current file attributes. */
+    record ArtifactEntry(File file, long size, long lastModified, Checksums checksums) {}
+
+    private record MetadataEntry(long timestamp, RenderedMetadata metadata) {}
+
+    private final Path path;
+    private final long metadataMaxAgeMillis;
+    private final Map<ArtifactKey, ArtifactEntry> artifacts = new ConcurrentHashMap<>();
+    private final Map<String, MetadataEntry> metadata = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    private FileChannel channel;
+    private int records;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param path the index file, or {@code null} to disable the index
+     * @param metadataMaxAge the age after which metadata entries are no longer used; 0 disables
+     *     the reuse of metadata and a negative value means that metadata entries never expire
+     * @param unit the unit of {@code metadataMaxAge}
+     */
+    PersistentIndex(Path path, long metadataMaxAge, TimeUnit unit) {
+        this.path = path;
+        metadataMaxAgeMillis = metadataMaxAge < 0 ? -1 : unit.toMillis(metadataMaxAge);
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    try {
+                        load();
+                    } catch (IOException ex) {
+                        log.warn("Failed to load {}: {}", path, ex.getMessage());
+                        closeChannel();
+                    }
+                    loaded = true;
+                }
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        Files.createDirectories(path.getParent());
+        channel =
+                FileChannel.open(
+                        path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+        long size = channel.size();
+        long validSize = 0;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("File too large");
+        }
+        if (size >= HEADER_SIZE) {
+            // Read the file instead of mapping it: on some platforms, a file that is mapped can't
+            // be truncated or replaced, and the mapping is only released by the garbage collector.
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) == -1) {
+                    break;
+                }
+            }
+            buffer.flip();
+            if (buffer.remaining() >= HEADER_SIZE
+                    && buffer.getInt() == MAGIC
+                    && buffer.getInt() == FORMAT_VERSION) {
+                validSize = parse(buffer);
+            }
+        }
+        if (validSize == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            validSize = HEADER_SIZE;
+        } else if (validSize < size) {
+            // Discard a partially written record at the end of the file.
+            channel.truncate(validSize);
+        }
+        channel.position(validSize);
+        log.debug(
+                "Loaded {} artifacts and {} metadata entries from {}",
+                artifacts.size(),
+                metadata.size(),
+                path);
+    }
+
+    /** Parse the records in the given buffer and return the offset after the last valid record. */
+    private long parse(ByteBuffer buffer) {
+        while (buffer.remaining() >= 4) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                return start;
+            }
+            byte[] record = new byte[length];
+            buffer.get(record);
+            try {
+                decode(new DataInputStream(new ByteArrayInputStream(record)));
+            } catch (IOException ex) {
+                return start;
+            }
+            records++;
+        }
+        return buffer.position();
+    }
+
+    private void decode(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if (type == ARTIFACT) {
+            ArtifactKey key =
+                    new ArtifactKey(
+                            in.readUTF(),
+                            in.readUTF(),
+                            in.readUTF(),
+                            emptyToNull(in.readUTF()),
+                            in.readUTF());
+            File file = new File(in.readUTF());
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            int count = in.readUnsignedByte();
+            String[] values = new String[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = in.readUTF();
+            }
+            Checksums checksums =
+                    count == ChecksumAlgorithm.values().length ? new Checksums(values) : null;
+            artifacts.put(key, new ArtifactEntry(file, size, lastModified, checksums));
+        } else if (type == METADATA) {
+            String key = in.readUTF();
+            long timestamp = in.readLong();
+            int length = in.readInt();
+            RenderedMetadata renderedMetadata = null;
+            if (length >= 0) {
+                byte[] content = new byte[length];
+                in.readFully(content);
+                renderedMetadata = RenderedMetadata.forContent(content);
+            }
+            metadata.put(key, new MetadataEntry(timestamp, renderedMetadata));
+        } else {
+            throw new IOException("Unexpected record type " + type);
+        }
+    }
+
+    private static String emptyToNull(String s) {
+        return s.isEmpty() ? null : s;
+    }
+
+    private static byte[] encode(ArtifactKey key, ArtifactEntry entry) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeByte(ARTIFACT);
+        out.writeUTF(key.groupId());
+        out.writeUTF(key.artifactId());
+        out.writeUTF(key.version());
+        out.writeUTF(key.classifier() == null ? "" : key.classifier());
+        out.writeUTF(key.extension());
+        out.writeUTF(entry.file().getAbsolutePath());
+        out.writeLong(entry.size());
+        out.writeLong(entry.lastModified());
+        if (entry.checksums() == null) {
+            out.writeByte(0);
+        } else {
+            out.writeByte(ChecksumAlgorithm.values().length);
+            for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+                out.writeUTF(entry.checksums().get(algorithm));
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] encode(String key, MetadataEntry entry) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeByte(METADATA);
+        out.writeUTF(key);
+        out.writeLong(entry.timestamp());
+        if (entry.metadata() == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] content = entry.metadata().getContent();
+            out.writeInt(content.length);
+            out.write(content);
+        }
+        return baos.toByteArray();
+    }
+
+    private synchronized void append(byte[] record) {
+        if (channel == null) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4 + record.length);
+        buffer.putInt(record.length).put(record).flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            records++;
+        } catch (IOException ex) {
+            log.warn("Failed to write to {}; disabling it: {}", path, ex.getMessage());
+            closeChannel();
+        }
+    }
+
+    /**
+     * Look up a resolved artifact.
+     *
+     * @return the entry, or {@code null} if the artifact is unknown or the file has changed
+     */
+    ArtifactEntry getArtifact(ArtifactKey key) {
+        if (path == null || ArtifactUtils.isSnapshot(key.version())) {
+            return null;
+        }
+        ensureLoaded();
+        ArtifactEntry entry = artifacts.get(key);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attrs =
+                    Files.readAttributes(entry.file().toPath(), BasicFileAttributes.class);
+            if (attrs.isRegularFile()
+                    && attrs.size() == entry.size()
+                    && attrs.lastModifiedTime().toMillis() == entry.lastModified()) {
+                hits.increment();
+                return entry;
+            }
+        } catch (NoSuchFileException ex) {
+            // Fall through
+        } catch (IOException ex) {
+            log.debug("Failed to read attributes of {}", entry.file(), ex);
+        }
+        artifacts.remove(key, entry);
+        stale.increment();
+        return null;
+    }
+
+    /**
+     * Record a resolved artifact. Snapshots are not recorded: the resolver needs to check for
+     * newer versions in remote repositories, which an entry in the index would bypass.
+     *
+     * @param checksums the checksums of the file, or {@code null} if they are not known
+     */
+    void putArtifact(ArtifactKey key, File file, Checksums checksums) {
+        if (path == null || ArtifactUtils.isSnapshot(key.version())) {
+            return;
+        }
+        ensureLoaded();
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException ex) {
+            return;
+        }
+        ArtifactEntry entry =
+                new ArtifactEntry(
+                        file, attrs.size(), attrs.lastModifiedTime().toMillis(), checksums);
+        ArtifactEntry existing = artifacts.get(key);
+        if (existing != null
+                && existing.file().equals(file)
+                && existing.size() == entry.size()
+                && existing.lastModified() == entry.lastModified()
+                && (checksums == null || existing.checksums() != null)) {
+            return;
+        }
+        artifacts.put(key, entry);
+        try {
+            append(encode(key, entry));
+        } catch (IOException ex) {
+            // Can't happen with a ByteArrayOutputStream.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Look up metadata that is not older than the configured maximum age.
+     *
+     * @param level the level of the metadata; version level metadata is never looked up
+     * @return the metadata, or {@code null} if there is no usable entry
+     */
+    Optional<RenderedMetadata> getMetadata(MetadataPath.Level level, String key) {
+        if (path == null || metadataMaxAgeMillis == 0 || level == MetadataPath.Level.VERSION) {
+            return null;
+        }
+        ensureLoaded();
+        MetadataEntry entry = metadata.get(key);
+        // Entries without metadata may have been written by an earlier version.
+        if (entry == null || entry.metadata() == null) {
+            return null;
+        }
+        if (metadataMaxAgeMillis > 0
+                && System.currentTimeMillis() - entry.timestamp() > metadataMaxAgeMillis) {
+            stale.increment();
+            return null;
+        }
+        hits.increment();
+        return Optional.of(entry.metadata());
+    }
+
+    /**
+     * Record metadata. Negative results are not recorded, so that a transient failure to reach a
+     * remote repository doesn't affect later builds. Version level metadata is not recorded either:
+     * it describes a snapshot, for which the resolver needs to check for newer versions.
+     *
+     * @param level the level of the metadata
+     */
+    void putMetadata(
+            MetadataPath.Level level, String key, Optional<RenderedMetadata> renderedMetadata) {
+        if (path == null || level == MetadataPath.Level.VERSION || renderedMetadata.isEmpty()) {
+            return;
+        }
+        ensureLoaded();
+        MetadataEntry entry =
+                new MetadataEntry(System.currentTimeMillis(), renderedMetadata.get());
+        metadata.put(key, entry);
+        try {
+            append(encode(key, entry));
+        } catch (IOException ex) {
+            // Can't happen with a ByteArrayOutputStream.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                // Ignore
+            }
+            channel = null;
+        }
+    }
+
+    /** Close the index, compacting the file if it contains many superseded records. */
+    synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        closeChannel();
+        if (records - artifacts.size() - metadata.size() > COMPACTION_THRESHOLD) {
+            try {
+                compact();
+            } catch (IOException ex) {
+                log.debug("Failed to compact {}", path, ex);
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out =
+                FileChannel.open(
+                        temp,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE)) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(baos);
+            data.writeInt(MAGIC);
+            data.writeInt(FORMAT_VERSION);
+            for (Map.Entry<ArtifactKey, ArtifactEntry> entry : artifacts.entrySet()) {
+                byte[] record = encode(entry.getKey(), entry.getValue());
+                data.writeInt(record.length);
+                data.write(record);
+            }
+            for (Map.Entry<String, MetadataEntry> entry : metadata.entrySet()) {
+                byte[] record = encode(entry.getKey(), entry.getValue());
+                data.writeInt(record.length);
+                data.write(record);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(baos.toByteArray());
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (path == null) {
+            return "disabled";
+        }
+        return String.format(
+                "%d artifacts, %d metadata entries, %d hits, %d stale",
+                artifacts.size(), metadata.size(), hits.sum(), stale.sum());
+    }
+}
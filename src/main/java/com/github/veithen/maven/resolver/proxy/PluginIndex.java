@@ -0,0 +1,153 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginManagement;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Immutable index of the plugins known to the invoking project, with pre-rendered metadata. This
+ * is used to answer metadata requests issued by the invoked project to determine the version of
+ * plugins for which no version is specified (see the README for an explanation why this may be
+ * necessary). It also answers the group level metadata requests used to resolve plugin prefixes.
+ */
+final class PluginIndex {
+    /** The plugin groups Maven searches for plugin prefixes by default. */
+    private static final List<String> DEFAULT_PLUGIN_GROUPS =
+            List.of("org.apache.maven.plugins", "org.codehaus.mojo");
+
+    private final Map<String, RenderedMetadata> metadata;
+    private final Set<String> pluginGroups;
+    private final Map<String, RenderedMetadata> groupMetadata;
+
+    private PluginIndex(
+            Map<String, RenderedMetadata> metadata,
+            Set<String> pluginGroups,
+            Map<String, RenderedMetadata> groupMetadata) {
+        this.metadata = metadata;
+        this.pluginGroups = pluginGroups;
+        this.groupMetadata = groupMetadata;
+    }
+
+    /**
+     * Build the index. If the same plugin is known with different versions, the version from
+     * pluginManagement takes precedence over the version used in the build, which in turn takes
+     * precedence over the version of a plugin project in the reactor.
+     */
+    static PluginIndex build(
+            MavenProject project, List<MavenProject> projects, List<String> extraPluginGroups)
+            throws XMLStreamException {
+        Map<String, String> versions = new LinkedHashMap<>();
+        PluginManagement pluginManagement = project.getPluginManagement();
+        if (pluginManagement != null) {
+            for (Plugin plugin : pluginManagement.getPlugins()) {
+                addVersion(versions, plugin.getKey(), plugin.getVersion());
+            }
+        }
+        for (Plugin plugin : project.getBuildPlugins()) {
+            addVersion(versions, plugin.getKey(), plugin.getVersion());
+        }
+        for (MavenProject reactorProject : projects) {
+            if (reactorProject.getPackaging().equals("maven-plugin")) {
+                addVersion(
+                        versions,
+                        Plugin.constructKey(
+                                reactorProject.getGroupId(), reactorProject.getArtifactId()),
+                        reactorProject.getVersion());
+            }
+        }
+        Set<String> pluginGroups = new HashSet<>(DEFAULT_PLUGIN_GROUPS);
+        pluginGroups.addAll(extraPluginGroups);
+        Map<String, RenderedMetadata> metadata = new HashMap<>();
+        Map<String, Map<String, String>> prefixes = new HashMap<>();
+        for (Map.Entry<String, String> entry : versions.entrySet()) {
+            String key = entry.getKey();
+            int idx = key.indexOf(':');
+            String groupId = key.substring(0, idx);
+            String artifactId = key.substring(idx + 1);
+            String version = entry.getValue();
+            metadata.put(
+                    key,
+                    RenderedMetadata.forVersions(
+                            groupId, artifactId, version, Collections.singletonList(version)));
+            if (pluginGroups.contains(groupId)) {
+                prefixes.computeIfAbsent(groupId, k -> new TreeMap<>())
+                        .putIfAbsent(
+                                PluginDescriptor.getGoalPrefixFromArtifactId(artifactId),
+                                artifactId);
+            }
+        }
+        Map<String, RenderedMetadata> groupMetadata = new HashMap<>();
+        for (Map.Entry<String, Map<String, String>> entry : prefixes.entrySet()) {
+            groupMetadata.put(entry.getKey(), RenderedMetadata.forPluginGroup(entry.getValue()));
+        }
+        return new PluginIndex(
+                Map.copyOf(metadata), Set.copyOf(pluginGroups), Map.copyOf(groupMetadata));
+    }
+
+    private static void addVersion(Map<String, String> versions, String key, String version) {
+        if (version != null) {
+            versions.putIfAbsent(key, version);
+        }
+    }
+
+    /**
+     * Get the metadata for a plugin.
+     *
+     * @param key the {@code groupId:artifactId} key of the plugin
+     * @return the metadata, or {@code null} if the plugin is unknown
+     */
+    RenderedMetadata getMetadata(String key) {
+        return metadata.get(key);
+    }
+
+    /** Get the group IDs that are searched for plugin prefixes. */
+    Set<String> getPluginGroups() {
+        return pluginGroups;
+    }
+
+    /**
+     * Get the group level metadata for a plugin group, i.e. the prefixes of the known plugins in
+     * that group.
+     *
+     * @param groupId the plugin group
+     * @return the metadata, or {@code null} if no plugins are known in that group
+     */
+    RenderedMetadata getGroupMetadata(String groupId) {
+        return groupMetadata.get(groupId);
+    }
+
+    int size() {
+        return metadata.size();
+    }
+}
@@ -0,0 +1,325 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.ArtifactTypeRegistry;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves the dependencies and plugins of the invoked projects in the background when the proxy
+ * starts, so that the first invoked builds don't pay for a serial chain of resolutions. Artifacts
+ * are resolved through the servlet, so that requests for an artifact that is being prefetched wait
+ * for the prefetch to complete instead of resolving the artifact again.
+ */
+final class Prefetcher {
+    private static final Logger log = LoggerFactory.getLogger(Prefetcher.class);
+
+    /** Matches the tokens that maven-invoker-plugin replaces when filtering POMs. */
+    private static final Pattern TOKEN = Pattern.compile("@([^@\\s]+)@");
+
+    private final RepositorySystem repositorySystem;
+    private final MavenSession session;
+    private final MavenProject project;
+    private final ResolverProxyServlet servlet;
+    private final ExecutorService executor;
+    private final Map<String, String> filterProperties = new HashMap<>();
+    private final Set<ArtifactKey> submitted = ConcurrentHashMap.newKeySet();
+    private final LongAdder projects = new LongAdder();
+    private final LongAdder resolved = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    Prefetcher(
+            RepositorySystem repositorySystem,
+            MavenSession session,
+            MavenProject project,
+            ResolverProxyServlet servlet,
+            int threads) {
+        this.repositorySystem = repositorySystem;
+        this.session = session;
+        this.project = project;
+        this.servlet = servlet;
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor =
+                Executors.newFixedThreadPool(
+                        threads,
+                        runnable -> {
+                            Thread thread =
+                                    new Thread(
+                                            runnable,
+                                            "resolver-proxy-prefetch-"
+                                                    + threadNumber.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        project.getProperties()
+                .forEach((key, value) -> filterProperties.put((String) key, (String) value));
+        filterProperties.put("project.groupId", project.getGroupId());
+        filterProperties.put("project.artifactId", project.getArtifactId());
+        filterProperties.put("project.version", project.getVersion());
+    }
+
+    /**
+     * Find the POM files matching the given glob patterns.
+     *
+     * @param basedir the directory the patterns are relative to
+     * @param patterns the patterns, e.g. {@code src/it/*}{@code /pom.xml}
+     */
+    static List<Path> findProjects(Path basedir, List<String> patterns) throws IOException {
+        Set<Path> result = new LinkedHashSet<>();
+        for (String pattern : patterns) {
+            // Only walk the part of the tree below the longest prefix without wildcards.
+            String[] segments = pattern.split("/");
+            Path start = basedir;
+            for (int i = 0; i < segments.length - 1 && !hasWildcard(segments[i]); i++) {
+                start = start.resolve(segments[i]);
+            }
+            if (!Files.isDirectory(start)) {
+                continue;
+            }
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            try (Stream<Path> stream = Files.walk(start)) {
+                stream.filter(path -> matcher.matches(basedir.relativize(path)))
+                        .filter(Files::isRegularFile)
+                        .sorted()
+                        .forEach(result::add);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    private static boolean hasWildcard(String segment) {
+        return segment.chars().anyMatch(c -> "*?[{".indexOf(c) != -1);
+    }
+
+    /** Start prefetching the dependencies and plugins of the given projects. */
+    void prefetch(List<Path> poms) {
+        for (Path pom : poms) {
+            executor.execute(() -> prefetchProject(pom));
+        }
+    }
+
+    private String filter(String content) {
+        Matcher matcher = TOKEN.matcher(content);
+        StringBuilder buffer = new StringBuilder();
+        while (matcher.find()) {
+            String value = filterProperties.get(matcher.group(1));
+            matcher.appendReplacement(
+                    buffer, Matcher.quoteReplacement(value == null ? matcher.group() : value));
+        }
+        matcher.appendTail(buffer);
+        return buffer.toString();
+    }
+
+    private void prefetchProject(Path pom) {
+        Model model;
+        try {
+            String content = filter(Files.readString(pom));
+            model = new MavenXpp3Reader().read(new StringReader(content), false);
+        } catch (IOException | XmlPullParserException ex) {
+            log.warn("Failed to read {}; skipping prefetch: {}", pom, ex.getMessage());
+            return;
+        }
+        projects.increment();
+        Parent parent = model.getParent();
+        if (parent != null && isResolvable(parent.getVersion())) {
+            submit(
+                    new ArtifactKey(
+                            parent.getGroupId(),
+                            parent.getArtifactId(),
+                            parent.getVersion(),
+                            null,
+                            "pom"));
+        }
+        DependencyManagement dependencyManagement = model.getDependencyManagement();
+        if (dependencyManagement != null) {
+            for (org.apache.maven.model.Dependency dependency :
+                    dependencyManagement.getDependencies()) {
+                if ("import".equals(dependency.getScope())
+                        && isResolvable(dependency.getVersion())) {
+                    submit(
+                            new ArtifactKey(
+                                    dependency.getGroupId(),
+                                    dependency.getArtifactId(),
+                                    dependency.getVersion(),
+                                    null,
+                                    "pom"));
+                }
+            }
+        }
+        collect(toDependencies(model.getDependencies()), project.getRemoteProjectRepositories());
+        Build build = model.getBuild();
+        if (build != null) {
+            for (Plugin plugin : build.getPlugins()) {
+                if (!isResolvable(plugin.getVersion())) {
+                    continue;
+                }
+                List<Dependency> dependencies = new ArrayList<>();
+                dependencies.add(
+                        new Dependency(
+                                new DefaultArtifact(
+                                        plugin.getGroupId(),
+                                        plugin.getArtifactId(),
+                                        "jar",
+                                        plugin.getVersion()),
+                                "runtime"));
+                dependencies.addAll(toDependencies(plugin.getDependencies()));
+                collect(dependencies, project.getRemotePluginRepositories());
+            }
+        }
+    }
+
+    /** Determine whether a version can be resolved without interpolating the model. */
+    private static boolean isResolvable(String version) {
+        return version != null && !version.contains("${") && !version.contains("@");
+    }
+
+    private List<Dependency> toDependencies(List<org.apache.maven.model.Dependency> dependencies) {
+        ArtifactTypeRegistry stereotypes = session.getRepositorySession().getArtifactTypeRegistry();
+        List<Dependency> result = new ArrayList<>();
+        for (org.apache.maven.model.Dependency dependency : dependencies) {
+            if (isResolvable(dependency.getVersion()) && !"system".equals(dependency.getScope())) {
+                result.add(RepositoryUtils.toDependency(dependency, stereotypes));
+            }
+        }
+        return result;
+    }
+
+    private void collect(List<Dependency> dependencies, List<RemoteRepository> repositories) {
+        if (dependencies.isEmpty()) {
+            return;
+        }
+        CollectRequest request = new CollectRequest();
+        request.setDependencies(dependencies);
+        request.setRepositories(repositories);
+        DependencyNode root;
+        try {
+            root =
+                    repositorySystem
+                            .collectDependencies(session.getRepositorySession(), request)
+                            .getRoot();
+        } catch (DependencyCollectionException ex) {
+            log.debug("Failed to collect dependencies for prefetch", ex);
+            // Still prefetch the part of the graph that could be collected.
+            root = ex.getResult().getRoot();
+        }
+        if (root != null) {
+            submitAll(root, Collections.newSetFromMap(new IdentityHashMap<>()));
+        }
+    }
+
+    private void submitAll(DependencyNode node, Set<DependencyNode> visited) {
+        if (!visited.add(node)) {
+            return;
+        }
+        Artifact artifact = node.getArtifact();
+        Dependency dependency = node.getDependency();
+        if (artifact != null && (dependency == null || !"system".equals(dependency.getScope()))) {
+            submit(
+                    new ArtifactKey(
+                            artifact.getGroupId(),
+                            artifact.getArtifactId(),
+                            artifact.getBaseVersion(),
+                            null,
+                            "pom"));
+            submit(
+                    new ArtifactKey(
+                            artifact.getGroupId(),
+                            artifact.getArtifactId(),
+                            artifact.getBaseVersion(),
+                            artifact.getClassifier().isEmpty() ? null : artifact.getClassifier(),
+                            artifact.getExtension()));
+        }
+        for (DependencyNode child : node.getChildren()) {
+            submitAll(child, visited);
+        }
+    }
+
+    private void submit(ArtifactKey artifact) {
+        if (!submitted.add(artifact)) {
+            return;
+        }
+        try {
+            executor.execute(
+                    () -> {
+                        if (servlet.prefetch(artifact)) {
+                            resolved.increment();
+                        } else {
+                            failed.increment();
+                        }
+                    });
+        } catch (RejectedExecutionException ex) {
+            // The proxy is being stopped.
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%d projects, %d artifacts submitted, %d resolved, %d failed",
+                projects.sum(), submitted.size(), resolved.sum(), failed.sum());
+    }
+}
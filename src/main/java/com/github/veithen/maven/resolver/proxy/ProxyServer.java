@@ -0,0 +1,207 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.ContextHandlerCollection;
+
+/**
+ * The embedded Jetty server together with the caches that don't depend on the configuration of a
+ * particular project and the scheduler executing resolutions. Each project using the proxy
+ * registers its own servlet context, so that project specific state (plugin management, remote
+ * repositories, metadata) stays isolated, but resolutions are scheduled fairly across all of them
+ * and concurrent resolutions of the same artifact are coalesced. If the
+ * server is shared, a single instance is kept in the repository session and it is stopped once
+ * all projects expected to use it have unregistered. In any case the server is stopped when the
+ * Maven session ends (see {@link SessionEndListener}), so that projects failing before the stop
+ * goal don't leave it running.
+ */
+final class ProxyServer {
+    /** The key under which the shared instance is stored in the repository session data. */
+    static final String SESSION_KEY = ProxyServer.class.getName();
+
+    private final Server server;
+    private final ServerConnector connector;
+    private final String description;
+    private final ContextHandlerCollection contexts = new ContextHandlerCollection();
+    private final ContentCache contentCache;
+    private final DigestIndex digestIndex;
+    private final int resolutionCacheSize;
+    private final Map<String, BoundedCache<ArtifactKey, File>> resolvedArtifacts = new HashMap<>();
+    private final Map<String, InFlightTable<ArtifactKey, ResolverProxyServlet.ResolvedArtifact>>
+            artifactResolutions = new HashMap<>();
+    private final Supplier<FairScheduler> schedulerFactory;
+    private FairScheduler scheduler;
+    private int refCount;
+    private int remainingUsers;
+
+    /**
+     * Constructor.
+     *
+     * @param server the (not yet started) server
+     * @param connector the connector of the server
+     * @param description a description of the server configuration, for logging purposes
+     * @param contentCache the content cache shared by all projects
+     * @param digestIndexSize the maximum number of files whose checksums are kept
+     * @param resolutionCacheSize the size of the resolution caches
+     * @param schedulerFactory creates the scheduler for resolutions; a new scheduler is created if
+     *     the server is started again after having been stopped
+     * @param expectedUsers the number of projects expected to register with this server
+     */
+    ProxyServer(
+            Server server,
+            ServerConnector connector,
+            String description,
+            ContentCache contentCache,
+            int digestIndexSize,
+            int resolutionCacheSize,
+            Supplier<FairScheduler> schedulerFactory,
+            int expectedUsers) {
+        this.server = server;
+        this.connector = connector;
+        this.description = description;
+        this.contentCache = contentCache;
+        digestIndex = new DigestIndex(digestIndexSize);
+        this.resolutionCacheSize = resolutionCacheSize;
+        this.schedulerFactory = schedulerFactory;
+        remainingUsers = expectedUsers;
+        server.setHandler(contexts);
+    }
+
+    ContentCache getContentCache() {
+        return contentCache;
+    }
+
+    DigestIndex getDigestIndex() {
+        return digestIndex;
+    }
+
+    /**
+     * Get the resolution cache for a given set of remote repositories. Projects using the same
+     * remote repositories share the cache.
+     *
+     * @param repositories a string identifying the remote repositories
+     */
+    synchronized BoundedCache<ArtifactKey, File> getResolvedArtifacts(String repositories) {
+        return resolvedArtifacts.computeIfAbsent(
+                repositories, key -> new BoundedCache<>(resolutionCacheSize));
+    }
+
+    /**
+     * Get the table coalescing concurrent resolutions of the same artifact, for a given set of
+     * remote repositories.
+     *
+     * @param repositories a string identifying the remote repositories
+     */
+    synchronized InFlightTable<ArtifactKey, ResolverProxyServlet.ResolvedArtifact>
+            getArtifactResolutions(String repositories) {
+        return artifactResolutions.computeIfAbsent(repositories, key -> new InFlightTable<>());
+    }
+
+    /** Get the scheduler executing the resolutions of all projects using this server. */
+    synchronized FairScheduler getScheduler() {
+        if (scheduler == null) {
+            scheduler = schedulerFactory.get();
+        }
+        return scheduler;
+    }
+
+    /**
+     * Register a context, starting the server if necessary.
+     *
+     * @return {@code true} if the server has been started
+     */
+    synchronized boolean register(ServletContextHandler context) throws Exception {
+        contexts.addHandler(context);
+        refCount++;
+        if (server.isStarted()) {
+            context.start();
+            return false;
+        } else {
+            server.start();
+            return true;
+        }
+    }
+
+    /**
+     * Unregister a context, stopping the server if no other project is using it or expected to use
+     * it.
+     *
+     * @return {@code true} if the server has been stopped
+     */
+    synchronized boolean unregister(ServletContextHandler context) throws Exception {
+        context.stop();
+        contexts.removeHandler(context);
+        refCount--;
+        remainingUsers--;
+        if (refCount == 0 && remainingUsers <= 0) {
+            doStop();
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Stop the server if it is still running.
+     *
+     * @return {@code true} if the server has been stopped
+     */
+    synchronized boolean stop() throws Exception {
+        if (!server.isStarted()) {
+            return false;
+        }
+        doStop();
+        return true;
+    }
+
+    private void doStop() throws Exception {
+        // Shut down the scheduler first, so that queued requests can still be answered (with a
+        // 503 status) before the connections are closed.
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        try {
+            server.stop();
+        } finally {
+            contentCache.clear();
+        }
+    }
+
+    int getPort() {
+        return connector.getLocalPort();
+    }
+
+    ServerConnector getConnector() {
+        return connector;
+    }
+
+    String getDescription() {
+        return description;
+    }
+}
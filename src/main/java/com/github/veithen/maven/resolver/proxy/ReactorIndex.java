@@ -0,0 +1,132 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.ArtifactUtils;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Immutable index of the artifacts produced by the projects in the reactor. It allows to serve
+ * these artifacts (and the corresponding metadata) without going through the artifact resolver.
+ */
+final class ReactorIndex {
+    private final Map<ArtifactKey, File> artifacts;
+    private final Map<String, RenderedMetadata> metadata;
+
+    private ReactorIndex(Map<ArtifactKey, File> artifacts, Map<String, RenderedMetadata> metadata) {
+        this.artifacts = artifacts;
+        this.metadata = metadata;
+    }
+
+    /**
+     * Build the index from the projects in the reactor. Artifacts that have not been built yet are
+     * skipped; requests for them will go through the artifact resolver.
+     */
+    static ReactorIndex build(List<MavenProject> projects) throws XMLStreamException {
+        Map<ArtifactKey, File> artifacts = new HashMap<>();
+        Map<String, RenderedMetadata> metadata = new HashMap<>();
+        for (MavenProject project : projects) {
+            String groupId = project.getGroupId();
+            String artifactId = project.getArtifactId();
+            String version = project.getVersion();
+            Map<ArtifactKey, File> projectArtifacts = new LinkedHashMap<>();
+            if (project.getFile() != null) {
+                projectArtifacts.put(
+                        new ArtifactKey(groupId, artifactId, version, null, "pom"),
+                        project.getFile());
+            }
+            add(projectArtifacts, project.getArtifact());
+            for (Artifact artifact : project.getAttachedArtifacts()) {
+                add(projectArtifacts, artifact);
+            }
+            artifacts.putAll(projectArtifacts);
+            metadata.put(
+                    Plugin.constructKey(groupId, artifactId),
+                    RenderedMetadata.forVersions(
+                            groupId, artifactId, version, Collections.singletonList(version)));
+            if (ArtifactUtils.isSnapshot(version)) {
+                long lastUpdated = 0;
+                for (File file : projectArtifacts.values()) {
+                    lastUpdated = Math.max(lastUpdated, file.lastModified());
+                }
+                metadata.put(
+                        groupId + ":" + artifactId + ":" + version,
+                        RenderedMetadata.forSnapshot(
+                                groupId,
+                                artifactId,
+                                version,
+                                new ArrayList<>(projectArtifacts.keySet()),
+                                lastUpdated));
+            }
+        }
+        return new ReactorIndex(Map.copyOf(artifacts), Map.copyOf(metadata));
+    }
+
+    private static void add(Map<ArtifactKey, File> artifacts, Artifact artifact) {
+        if (artifact == null) {
+            return;
+        }
+        File file = artifact.getFile();
+        // The file may also be a directory (target/classes) if the project has not been packaged.
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        artifacts.put(
+                new ArtifactKey(
+                        artifact.getGroupId(),
+                        artifact.getArtifactId(),
+                        artifact.getBaseVersion(),
+                        artifact.getClassifier(),
+                        artifact.getArtifactHandler().getExtension()),
+                file);
+    }
+
+    File getArtifact(ArtifactKey key) {
+        return artifacts.get(key);
+    }
+
+    /**
+     * Get the metadata for a reactor project.
+     *
+     * @param key the {@code groupId:artifactId} key of the project for artifact level metadata, or
+     *     the {@code groupId:artifactId:version} key for the version level metadata of a snapshot
+     * @return the metadata, or {@code null} if there is no such project in the reactor
+     * @see MetadataPath#key()
+     */
+    RenderedMetadata getMetadata(String key) {
+        return metadata.get(key);
+    }
+
+    int size() {
+        return artifacts.size();
+    }
+}
@@ -0,0 +1,194 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * A {@code maven-metadata.xml} document rendered once, together with its checksums, so that the
+ * document and its checksum files can be served from the same bytes.
+ */
+final class RenderedMetadata {
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+
+    private final byte[] content;
+    private final Checksums checksums;
+    private final Set<String> versions;
+    private volatile byte[] compressedContent;
+
+    private RenderedMetadata(byte[] content, Set<String> versions) {
+        this.content = content;
+        checksums = Checksums.compute(content);
+        this.versions = versions;
+    }
+
+    /** Wrap a document rendered previously, e.g. by another build. */
+    static RenderedMetadata forContent(byte[] content) {
+        return new RenderedMetadata(content, null);
+    }
+
+    private interface Body {
+        void write(XMLStreamWriter writer) throws XMLStreamException;
+    }
+
+    private static RenderedMetadata render(Body body, Set<String> versions)
+            throws XMLStreamException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XMLStreamWriter writer = XML_OUTPUT_FACTORY.createXMLStreamWriter(out, "utf-8");
+        writer.writeStartDocument("utf-8", "1.0");
+        writer.writeStartElement("metadata");
+        body.write(writer);
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.close();
+        return new RenderedMetadata(out.toByteArray(), versions);
+    }
+
+    private static void writeElement(XMLStreamWriter writer, String name, String value)
+            throws XMLStreamException {
+        writer.writeStartElement(name);
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+    }
+
+    /** Render artifact level metadata, i.e. the list of available versions of an artifact. */
+    static RenderedMetadata forVersions(
+            String groupId, String artifactId, String latestVersion, List<String> versions)
+            throws XMLStreamException {
+        return render(
+                writer -> {
+                    writeElement(writer, "groupId", groupId);
+                    writeElement(writer, "artifactId", artifactId);
+                    writer.writeStartElement("versioning");
+                    writeElement(writer, "latest", latestVersion);
+                    writer.writeStartElement("versions");
+                    for (String version : versions) {
+                        writeElement(writer, "version", version);
+                    }
+                    writer.writeEndElement();
+                    writer.writeEndElement();
+                },
+                Set.copyOf(versions));
+    }
+
+    /**
+     * Render version level metadata for a snapshot version. The metadata maps each of the given
+     * artifacts to the non-timestamped snapshot version, so that clients request the files by
+     * their base version.
+     *
+     * @param artifacts the artifacts available for the snapshot version
+     * @param lastUpdated the last modification time of the artifacts
+     */
+    static RenderedMetadata forSnapshot(
+            String groupId,
+            String artifactId,
+            String version,
+            List<ArtifactKey> artifacts,
+            long lastUpdated)
+            throws XMLStreamException {
+        String timestamp = TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(lastUpdated));
+        return render(
+                writer -> {
+                    writeElement(writer, "groupId", groupId);
+                    writeElement(writer, "artifactId", artifactId);
+                    writeElement(writer, "version", version);
+                    writer.writeStartElement("versioning");
+                    writeElement(writer, "lastUpdated", timestamp);
+                    writer.writeStartElement("snapshotVersions");
+                    for (ArtifactKey artifact : artifacts) {
+                        writer.writeStartElement("snapshotVersion");
+                        if (artifact.classifier() != null) {
+                            writeElement(writer, "classifier", artifact.classifier());
+                        }
+                        writeElement(writer, "extension", artifact.extension());
+                        writeElement(writer, "value", version);
+                        writeElement(writer, "updated", timestamp);
+                        writer.writeEndElement();
+                    }
+                    writer.writeEndElement();
+                    writer.writeEndElement();
+                },
+                null);
+    }
+
+    /**
+     * Render group level metadata, i.e. the mapping between plugin prefixes and plugin artifact
+     * IDs.
+     *
+     * @param prefixes map of plugin prefixes to artifact IDs
+     */
+    static RenderedMetadata forPluginGroup(Map<String, String> prefixes) throws XMLStreamException {
+        return render(
+                writer -> {
+                    writer.writeStartElement("plugins");
+                    for (Map.Entry<String, String> entry : prefixes.entrySet()) {
+                        writer.writeStartElement("plugin");
+                        writeElement(writer, "name", entry.getValue());
+                        writeElement(writer, "prefix", entry.getKey());
+                        writeElement(writer, "artifactId", entry.getValue());
+                        writer.writeEndElement();
+                    }
+                    writer.writeEndElement();
+                },
+                null);
+    }
+
+    /** Get the content of the document. The returned array must not be modified. */
+    byte[] getContent() {
+        return content;
+    }
+
+    /** Get the gzip compressed content. It is computed on first use. */
+    byte[] getCompressedContent() {
+        byte[] compressedContent = this.compressedContent;
+        if (compressedContent == null) {
+            compressedContent = Compression.gzip(content);
+            this.compressedContent = compressedContent;
+        }
+        return compressedContent;
+    }
+
+    Checksums getChecksums() {
+        return checksums;
+    }
+
+    /**
+     * Determine whether artifact level metadata lists the given version.
+     *
+     * @return {@code true} if the version is listed, {@code false} if it isn't listed or the
+     *     versions are unknown (because this is not artifact level metadata or it was rendered
+     *     previously)
+     */
+    boolean hasVersion(String version) {
+        return versions != null && versions.contains(version);
+    }
+}
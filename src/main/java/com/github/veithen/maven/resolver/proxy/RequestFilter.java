@@ -0,0 +1,115 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Rejects requests for files that the proxy can never supply (such as signatures), so that they
+ * don't go through the artifact resolver. Rules are glob patterns in which {@code *} matches any
+ * sequence of characters other than {@code /} and {@code **} matches any sequence of characters.
+ * Patterns that don't contain a {@code /} are matched against the file name only; other patterns
+ * are matched against the full path.
+ */
+final class RequestFilter {
+    private static final class Rule {
+        private final String pattern;
+        private final Pattern regex;
+        private final boolean matchFileName;
+        private final LongAdder rejected = new LongAdder();
+
+        Rule(String pattern) {
+            this.pattern = pattern;
+            regex = compile(pattern);
+            matchFileName = pattern.indexOf('/') == -1;
+        }
+
+        private static Pattern compile(String glob) {
+            StringBuilder regex = new StringBuilder();
+            int start = 0;
+            for (int i = 0; i < glob.length(); i++) {
+                if (glob.charAt(i) == '*') {
+                    if (i > start) {
+                        regex.append(Pattern.quote(glob.substring(start, i)));
+                    }
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                    start = i + 1;
+                }
+            }
+            if (start < glob.length()) {
+                regex.append(Pattern.quote(glob.substring(start)));
+            }
+            return Pattern.compile(regex.toString());
+        }
+
+        boolean matches(String path, String fileName) {
+            return regex.matcher(matchFileName ? fileName : path).matches();
+        }
+    }
+
+    private final List<Rule> rules = new ArrayList<>();
+
+    RequestFilter(List<String> patterns) {
+        for (String pattern : patterns) {
+            pattern = pattern.trim();
+            if (!pattern.isEmpty()) {
+                rules.add(new Rule(pattern));
+            }
+        }
+    }
+
+    /**
+     * Check whether a request is rejected by one of the rules.
+     *
+     * @param path the request path (without leading slash)
+     * @return the pattern of the rule that rejects the request, or {@code null} if the request is
+     *     not rejected
+     */
+    String match(String path) {
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        for (Rule rule : rules) {
+            if (rule.matches(path, fileName)) {
+                rule.rejected.increment();
+                return rule.pattern;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        for (Rule rule : rules) {
+            if (buffer.length() > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(rule.pattern).append(": ").append(rule.rejected.sum());
+        }
+        return buffer.toString();
+    }
+}
@@ -19,43 +19,42 @@
  */
 package com.github.veithen.maven.resolver.proxy;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.RandomAccessFile;
-import java.nio.channels.FileChannel.MapMode;
-import java.security.DigestOutputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
+import jakarta.servlet.AsyncContext;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamWriter;
 
-import org.apache.commons.codec.binary.Hex;
-import org.apache.commons.io.output.NullOutputStream;
 import org.apache.maven.RepositoryUtils;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Plugin;
-import org.apache.maven.model.PluginManagement;
-import org.apache.maven.shared.transfer.artifact.DefaultArtifactCoordinate;
-import org.apache.maven.shared.transfer.artifact.resolve.ArtifactResolver;
-import org.apache.maven.shared.transfer.artifact.resolve.ArtifactResolverException;
+import org.apache.maven.project.ProjectBuildingRequest;
 import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
 import org.eclipse.aether.resolution.VersionRangeRequest;
 import org.eclipse.aether.resolution.VersionRangeResolutionException;
 import org.eclipse.aether.resolution.VersionRangeResult;
 import org.eclipse.aether.version.Version;
-import org.eclipse.jetty.ee10.servlet.HttpOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,23 +62,128 @@ import org.slf4j.LoggerFactory;
 final class ResolverProxyServlet extends HttpServlet {
     private static final Logger log = LoggerFactory.getLogger(ResolverProxyServlet.class);
 
+    static final String BATCH_RESOLVE_PATH = "/.proxy/resolve";
+
+    static final String STATS_PATH = "/.proxy/stats";
+
+    /** The name of the request header identifying the invoked build. */
+    static final String BUILD_HEADER = "X-Resolver-Proxy-Build";
+
+    /** The maximum number of coordinates in a batch resolution request. */
+    private static final int MAX_BATCH_SIZE = 10000;
+
     private final RepositorySystem repositorySystem;
-    private final ArtifactResolver resolver;
     private final MavenSession session;
-    private final PluginManagement pluginManagement;
+    private final List<RemoteRepository> repositories;
+    private final List<RemoteRepository> pluginRepositories;
+    private final PluginIndex pluginIndex;
+    private final ReactorIndex reactorIndex;
+    private final RequestFilter requestFilter;
+    private final BoundedCache<ArtifactKey, File> resolvedArtifacts;
+    private final BoundedCache<ArtifactKey, Boolean> unresolvableArtifacts;
+    private final DigestIndex digestIndex;
+    private final InFlightTable<ArtifactKey, ResolvedArtifact> artifactResolutions;
+    private final BoundedCache<String, Optional<RenderedMetadata>> renderedMetadata;
+    private final InFlightTable<String, ResolvedMetadata> metadataResolutions =
+            new InFlightTable<>();
+    private final ContentCache contentCache;
+    private final SpeculativePrefetcher speculativePrefetcher;
+    private final LocalRepositorySeeder seeder;
+    private final PersistentIndex persistentIndex;
+    private final ResourceSender resourceSender;
+    private final Metrics metrics = new Metrics();
+    private final Timeline timeline;
+    private final TraceRecorder traceRecorder;
+    private final FairScheduler scheduler;
+
+    /** Resolves artifacts for speculative prefetch. */
+    private final SpeculativePrefetcher.Resolver speculativeResolver =
+            new SpeculativePrefetcher.Resolver() {
+                @Override
+                public boolean isAvailable(ArtifactKey artifact) {
+                    return ResolverProxyServlet.this.isAvailable(artifact);
+                }
+
+                @Override
+                public boolean resolve(ArtifactKey artifact) {
+                    ResolvedArtifact resolvedArtifact =
+                            resolveArtifact(artifact.toString(), artifact);
+                    // The artifact may have been resolved while the task was queued.
+                    return resolvedArtifact != null
+                            && resolvedArtifact.source() != Metrics.Source.CACHE;
+                }
+            };
 
     ResolverProxyServlet(
             RepositorySystem repositorySystem,
-            ArtifactResolver resolver,
             MavenSession session,
-            PluginManagement pluginManagement) {
+            ProjectBuildingRequest buildingRequest,
+            ProjectBuildingRequest pluginBuildingRequest,
+            PluginIndex pluginIndex,
+            ReactorIndex reactorIndex,
+            RequestFilter requestFilter,
+            BoundedCache<ArtifactKey, File> resolvedArtifacts,
+            InFlightTable<ArtifactKey, ResolvedArtifact> artifactResolutions,
+            BoundedCache<ArtifactKey, Boolean> unresolvableArtifacts,
+            BoundedCache<String, Optional<RenderedMetadata>> renderedMetadata,
+            DigestIndex digestIndex,
+            ContentCache contentCache,
+            Compression compression,
+            SpeculativePrefetcher speculativePrefetcher,
+            Path seedRepository,
+            PersistentIndex persistentIndex,
+            Timeline timeline,
+            TraceRecorder traceRecorder,
+            FairScheduler scheduler) {
         this.repositorySystem = repositorySystem;
-        this.resolver = resolver;
         this.session = session;
-        this.pluginManagement = pluginManagement;
+        repositories = RepositoryUtils.toRepos(buildingRequest.getRemoteRepositories());
+        pluginRepositories =
+                pluginBuildingRequest == null
+                        ? null
+                        : RepositoryUtils.toRepos(pluginBuildingRequest.getRemoteRepositories());
+        this.pluginIndex = pluginIndex;
+        this.reactorIndex = reactorIndex;
+        this.requestFilter = requestFilter;
+        this.resolvedArtifacts = resolvedArtifacts;
+        this.artifactResolutions = artifactResolutions;
+        this.unresolvableArtifacts = unresolvableArtifacts;
+        this.renderedMetadata = renderedMetadata;
+        this.digestIndex = digestIndex;
+        this.contentCache = contentCache;
+        this.speculativePrefetcher = speculativePrefetcher;
+        seeder =
+                new LocalRepositorySeeder(
+                        seedRepository,
+                        session.getRepositorySession().getLocalRepository().getBasedir().toPath(),
+                        digestIndex);
+        this.persistentIndex = persistentIndex;
+        this.timeline = timeline;
+        this.traceRecorder = traceRecorder;
+        resourceSender = new ResourceSender(contentCache, compression);
+        this.scheduler = scheduler;
     }
 
-    private DefaultArtifactCoordinate parseArtifactRequest(String path) {
+    void logStatistics() {
+        log.info("Rejected requests: {}", requestFilter);
+        log.info("Resolution cache: {}", resolvedArtifacts);
+        log.info("Not found cache: {}", unresolvableArtifacts);
+        log.info("Artifact resolutions: {}", artifactResolutions);
+        log.info("Digest index: {}", digestIndex);
+        log.info("Metadata cache: {}", renderedMetadata);
+        log.info("Metadata resolutions: {}", metadataResolutions);
+        log.info("Content cache: {}", contentCache);
+        log.info("Speculative prefetch: {}", speculativePrefetcher);
+        log.info("Local repository seeding: {}", seeder);
+        log.info("Persistent index: {}", persistentIndex);
+        log.info("Requests:\n{}", metrics.toTable());
+        log.info("Timeline: {}", timeline);
+        log.info("Trace: {}", traceRecorder);
+        log.info("Resolution scheduling: {}", scheduler);
+        log.info("Queue times by build:\n{}", scheduler.getQueueStatistics());
+    }
+
+    static ArtifactKey parseArtifactRequest(String path) {
         int fileSlash = path.lastIndexOf('/');
         if (fileSlash == -1) {
             return null;
@@ -122,13 +226,7 @@ final class ResolverProxyServlet extends HttpServlet {
         } else {
             return null;
         }
-        DefaultArtifactCoordinate artifact = new DefaultArtifactCoordinate();
-        artifact.setGroupId(groupId);
-        artifact.setArtifactId(artifactId);
-        artifact.setVersion(version);
-        artifact.setClassifier(classifier);
-        artifact.setExtension(extension);
-        return artifact;
+        return new ArtifactKey(groupId, artifactId, version, classifier, extension);
     }
 
     @Override
@@ -143,219 +241,998 @@ final class ResolverProxyServlet extends HttpServlet {
         process(request, response, true);
     }
 
-    private void process(HttpServletRequest request, HttpServletResponse response, boolean head)
+    /**
+     * Resolve a batch of artifacts in a single request to {@value #BATCH_RESOLVE_PATH}. The request
+     * body contains one coordinate per line, in the {@code
+     * groupId:artifactId[:extension[:classifier]]:version} format. Empty lines and lines starting
+     * with {@code #} are ignored. The response contains one line per coordinate with the
+     * coordinate, the status ({@code OK}, {@code NOT_FOUND}, {@code INVALID} or {@code
+     * UNAVAILABLE}) and either the repository path of the artifact (which can now be served from
+     * the cache) or an error message, separated by tabs. Artifacts are looked up in the same
+     * caches as with individual GET requests for their repository paths; the remaining ones are
+     * resolved with a single {@link RepositorySystem#resolveArtifacts} call.
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        String path = request.getPathInfo();
-        if (path != null && path.startsWith("/")) {
+        if (!BATCH_RESOLVE_PATH.equals(request.getPathInfo())) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        List<String> coordinates = new ArrayList<>();
+        try (BufferedReader reader = request.getReader()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (coordinates.size() == MAX_BATCH_SIZE) {
+                    response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+                    return;
+                }
+                coordinates.add(line);
+            }
+        }
+        String[] statuses = new String[coordinates.size()];
+        List<Integer> pending = new ArrayList<>();
+        List<ArtifactKey> keys = new ArrayList<>();
+        for (int i = 0; i < statuses.length; i++) {
+            ArtifactKey key;
             try {
-                process(path.substring(1), response, head);
-            } catch (ServletException | IOException ex) {
-                log.debug("Error processing request for {}", path, ex);
-                throw ex;
+                key = parseCoordinate(coordinates.get(i));
+            } catch (IllegalArgumentException ex) {
+                statuses[i] = "INVALID\t" + ex.getMessage();
+                continue;
             }
-        } else {
-            log.error("Expected pathInfo starting with '/'; was: {}", path);
+            String status = lookupBatchEntry(key);
+            if (status != null) {
+                statuses[i] = status;
+            } else {
+                pending.add(i);
+                keys.add(key);
+            }
+        }
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0);
+        if (pending.isEmpty()) {
+            sendBatchResult(response, asyncContext, coordinates, statuses);
+            return;
+        }
+        // The misses are resolved by a single task, subject to the same scheduling as the
+        // artifacts requested individually.
+        scheduler.execute(
+                request.getHeader(BUILD_HEADER),
+                () -> {
+                    List<String> results = resolveBatch(keys);
+                    for (int i = 0; i < pending.size(); i++) {
+                        statuses[pending.get(i)] = results.get(i);
+                    }
+                    sendBatchResult(response, asyncContext, coordinates, statuses);
+                },
+                () -> {
+                    for (int index : pending) {
+                        statuses[index] = "UNAVAILABLE\tThe proxy is shutting down";
+                    }
+                    sendBatchResult(response, asyncContext, coordinates, statuses);
+                });
+    }
+
+    /**
+     * Parse a coordinate of a batch request into the key that a GET request for the artifact would
+     * use.
+     */
+    private static ArtifactKey parseCoordinate(String coordinate) {
+        Artifact artifact = new DefaultArtifact(coordinate);
+        if (!artifact.getVersion().equals(artifact.getBaseVersion())) {
+            throw new IllegalArgumentException(
+                    "Timestamped snapshot versions are not supported: " + coordinate);
         }
+        return new ArtifactKey(
+                artifact.getGroupId(),
+                artifact.getArtifactId(),
+                artifact.getVersion(),
+                artifact.getClassifier().isEmpty() ? null : artifact.getClassifier(),
+                artifact.getExtension());
     }
 
-    private void process(String path, HttpServletResponse response, boolean head)
-            throws IOException, ServletException {
-        String orgPath = path;
-        String checksumType = null;
-        int idx = path.lastIndexOf('.');
-        if (idx != -1) {
-            String suffix = path.substring(idx + 1);
-            if (suffix.equals("md5") || suffix.equals("sha1")) {
-                path = path.substring(0, idx);
-                checksumType = suffix;
+    /**
+     * Determine the status of an entry of a batch request without invoking the resolver, using
+     * the same indexes and caches as a GET request.
+     *
+     * @return the status, or {@code null} if the artifact needs to be resolved
+     */
+    private String lookupBatchEntry(ArtifactKey artifact) {
+        if (reactorIndex.getArtifact(artifact) != null
+                || getCachedArtifact(artifact) != null
+                || lookupPersistentIndex(artifact) != null) {
+            return "OK\t" + artifact.toPath();
+        }
+        if (unresolvableArtifacts.get(artifact) != null) {
+            return "NOT_FOUND\tPreviously couldn't be resolved";
+        }
+        return null;
+    }
+
+    /**
+     * Resolve the entries of a batch request that are not in the caches, using a single call to
+     * the repository system. Artifacts that are being resolved by concurrent requests (in batches
+     * or not) are not resolved again; their results are awaited instead.
+     *
+     * @return the statuses, in the same order as the artifacts
+     */
+    private List<String> resolveBatch(List<ArtifactKey> artifacts) {
+        List<InFlightTable<ArtifactKey, ResolvedArtifact>.Execution> executions =
+                new ArrayList<>(artifacts.size());
+        List<ArtifactKey> uncached = new ArrayList<>();
+        List<InFlightTable<ArtifactKey, ResolvedArtifact>.Execution> uncachedExecutions =
+                new ArrayList<>();
+        for (ArtifactKey artifact : artifacts) {
+            InFlightTable<ArtifactKey, ResolvedArtifact>.Execution execution =
+                    artifactResolutions.begin(artifact);
+            executions.add(execution);
+            if (!execution.isOwner()) {
+                continue;
+            }
+            // The artifact may have been resolved while the request was queued.
+            File file = getCachedArtifact(artifact);
+            if (file != null) {
+                execution.complete(new ResolvedArtifact(file, Metrics.Source.CACHE));
+            } else if (unresolvableArtifacts.get(artifact) != null) {
+                execution.fail(
+                        new ArtifactResolutionException(
+                                List.of(), artifact + " previously couldn't be resolved", null));
+            } else {
+                uncached.add(artifact);
+                uncachedExecutions.add(execution);
+            }
+        }
+        if (!uncached.isEmpty()) {
+            try {
+                List<ArtifactResult> results = doResolveArtifacts(uncached);
+                for (int i = 0; i < uncached.size(); i++) {
+                    ArtifactKey artifact = uncached.get(i);
+                    ArtifactResult result = results.get(i);
+                    if (result.isResolved()) {
+                        uncachedExecutions.get(i).complete(cacheResolvedArtifact(artifact, result));
+                    } else {
+                        unresolvableArtifacts.put(artifact, Boolean.TRUE);
+                        uncachedExecutions
+                                .get(i)
+                                .fail(new ArtifactResolutionException(List.of(result)));
+                    }
+                }
+            } catch (RuntimeException ex) {
+                for (InFlightTable<ArtifactKey, ResolvedArtifact>.Execution execution :
+                        uncachedExecutions) {
+                    execution.fail(ex);
+                }
+            }
+        }
+        // Only wait for other requests once the executions owned by this one are complete, so
+        // that concurrent batches don't wait for each other.
+        List<String> statuses = new ArrayList<>(artifacts.size());
+        for (int i = 0; i < artifacts.size(); i++) {
+            try {
+                executions.get(i).<ArtifactResolutionException>await();
+                statuses.add("OK\t" + artifacts.get(i).toPath());
+            } catch (ArtifactResolutionException | RuntimeException ex) {
+                log.debug("{} couldn't be resolved", artifacts.get(i), ex);
+                statuses.add(
+                        "NOT_FOUND\t" + String.valueOf(ex.getMessage()).replaceAll("\\s+", " "));
+            }
+        }
+        return statuses;
+    }
+
+    private static void sendBatchResult(
+            HttpServletResponse response,
+            AsyncContext asyncContext,
+            List<String> coordinates,
+            String[] statuses) {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < statuses.length; i++) {
+            buffer.append(coordinates.get(i)).append('\t').append(statuses[i]).append('\n');
+        }
+        byte[] result = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            response.setContentType("text/plain; charset=utf-8");
+            response.setContentLength(result.length);
+            response.getOutputStream().write(result);
+        } catch (IOException ex) {
+            log.debug("Failed to send batch resolution result", ex);
+        }
+        asyncContext.complete();
+    }
+
+    @Override
+    public void destroy() {
+        speculativePrefetcher.shutdown();
+        seeder.shutdown();
+        persistentIndex.close();
+        traceRecorder.close();
+    }
+
+    private void process(HttpServletRequest request, HttpServletResponse response, boolean head)
+            throws ServletException, IOException {
+        String path = request.getPathInfo();
+        if (path == null || !path.startsWith("/")) {
+            log.error("Expected pathInfo starting with '/'; was: {}", path);
+            return;
+        }
+        if (path.equals(STATS_PATH)) {
+            byte[] stats =
+                    metrics.toJson(scheduler.getQueueStatisticsJson())
+                            .getBytes(StandardCharsets.UTF_8);
+            response.setContentType("application/json");
+            response.setContentLength(stats.length);
+            if (!head) {
+                response.getOutputStream().write(stats);
             }
+            return;
         }
-        if (path.endsWith("/maven-metadata.xml")) {
-            int fileSlash = path.lastIndexOf('/');
-            int artifactSlash = path.lastIndexOf('/', fileSlash - 1);
-            if (artifactSlash != -1) {
-                processMetadataRequest(
-                        orgPath,
-                        path.substring(0, artifactSlash).replace('/', '.'),
-                        path.substring(artifactSlash + 1, fileSlash),
-                        checksumType,
+        Events.Request requestEvent = Events.beginRequest();
+        long start = System.nanoTime();
+        RequestHandler handler = createHandler(path.substring(1));
+        Resource resource;
+        try {
+            Events.Lookup lookupEvent = Events.beginLookup();
+            resource = handler.lookup();
+            Events.commitLookup(lookupEvent, path, resource != null);
+            if (resource != null) {
+                Events.Transfer transferEvent = Events.beginTransfer();
+                long sendStart = System.nanoTime();
+                long bytes = resourceSender.send(request, response, resource, head);
+                long end = System.nanoTime();
+                Events.commitTransfer(transferEvent, path, bytes);
+                recordRequest(
+                        request,
                         response,
-                        head);
+                        path,
+                        handler,
+                        resource,
+                        requestEvent,
+                        start,
+                        -1,
+                        sendStart,
+                        end,
+                        bytes);
                 return;
             }
+        } catch (IOException ex) {
+            log.debug("Error processing request for {}", path, ex);
+            throw ex;
+        }
+        // The request can't be answered without invoking the resolver. Do that on a resolver thread
+        // so that the request thread is available to serve other requests.
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0);
+        schedule(
+                request,
+                response,
+                asyncContext,
+                () -> {
+                    long resolveStart = System.nanoTime();
+                    Resource resolvedResource;
+                    try {
+                        resolvedResource = handler.resolve();
+                    } catch (ServletException | IOException | RuntimeException ex) {
+                        log.error("An error occurred in the resolver proxy", ex);
+                        response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                        asyncContext.complete();
+                        return;
+                    }
+                    Events.Transfer transferEvent = Events.beginTransfer();
+                    long sendStart = System.nanoTime();
+                    resourceSender.sendAsync(
+                            request,
+                            response,
+                            resolvedResource,
+                            head,
+                            asyncContext,
+                            bytes -> {
+                                long end = System.nanoTime();
+                                Events.commitTransfer(transferEvent, path, bytes);
+                                recordRequest(
+                                        request,
+                                        response,
+                                        path,
+                                        handler,
+                                        resolvedResource,
+                                        requestEvent,
+                                        start,
+                                        resolveStart,
+                                        sendStart,
+                                        end,
+                                        bytes);
+                            });
+                });
+    }
+
+    /**
+     * Schedule resolution work for an asynchronous request. If the scheduler is shut down before
+     * the work is executed, the request is answered with a 503 status.
+     */
+    private void schedule(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            AsyncContext asyncContext,
+            Runnable task) {
+        scheduler.execute(
+                request.getHeader(BUILD_HEADER),
+                task,
+                () -> {
+                    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    asyncContext.complete();
+                });
+    }
+
+    /**
+     * Record a completed request in the metrics, the timeline and the flight recording.
+     *
+     * @param event the flight recorder event, or {@code null} if the event type is disabled
+     * @param resolveStart the time at which the resolution started, or -1 if the request was
+     *     answered without resolution
+     */
+    private void recordRequest(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            String path,
+            RequestHandler handler,
+            Resource resource,
+            Events.Request event,
+            long start,
+            long resolveStart,
+            long sendStart,
+            long end,
+            long bytes) {
+        Metrics.Kind kind = handler.kind();
+        Metrics.Source source = resource.exists() ? handler.source() : Metrics.Source.NOT_FOUND;
+        if (resolveStart != -1) {
+            metrics.recordResolution(sendStart - resolveStart);
+        }
+        metrics.recordTransfer(end - sendStart);
+        metrics.recordRequest(kind, source, end - start, bytes);
+        String build = request.getHeader(BUILD_HEADER);
+        traceRecorder.record(
+                build, request.getMethod(), path, response.getStatus(), bytes, start, end);
+        timeline.record(
+                build,
+                path,
+                kind,
+                source,
+                response.getStatus(),
+                bytes,
+                start,
+                resolveStart,
+                sendStart,
+                end);
+        Events.commitRequest(event, path, build, kind, source, response.getStatus(), bytes);
+    }
+
+    private RequestHandler createHandler(String path) {
+        ChecksumAlgorithm checksumAlgorithm = null;
+        String resourcePath = path;
+        int idx = path.lastIndexOf('.');
+        if (idx != -1) {
+            checksumAlgorithm = ChecksumAlgorithm.forExtension(path.substring(idx + 1));
+            if (checksumAlgorithm != null) {
+                resourcePath = path.substring(0, idx);
+            }
+        }
+        boolean metadata = resourcePath.endsWith("/maven-metadata.xml");
+        String rejectPattern = requestFilter.match(path);
+        if (rejectPattern != null) {
+            log.debug("Returning 404 for {} (rejected by {})", path, rejectPattern);
+            return notFoundHandler(checksumAlgorithm, metadata);
+        }
+        if (metadata) {
+            return new MetadataRequestHandler(
+                    path,
+                    MetadataPath.parse(
+                            resourcePath.substring(0, resourcePath.lastIndexOf('/')),
+                            pluginIndex.getPluginGroups(),
+                            this::isKnownVersion),
+                    checksumAlgorithm);
         } else {
-            DefaultArtifactCoordinate artifact = parseArtifactRequest(path);
+            ArtifactKey artifact = parseArtifactRequest(resourcePath);
             if (artifact != null) {
-                processArtifactRequest(orgPath, artifact, checksumType, response, head);
-                return;
+                if (checksumAlgorithm == null) {
+                    speculativePrefetcher.artifactRequested(artifact);
+                }
+                return new ArtifactRequestHandler(path, artifact, checksumAlgorithm);
             }
         }
-
         log.debug("Returning 404 for {}", path);
-        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-        return;
+        return notFoundHandler(checksumAlgorithm, metadata);
     }
 
-    private void processArtifactRequest(
-            String path,
-            DefaultArtifactCoordinate artifact,
-            String checksumType,
-            HttpServletResponse response,
-            boolean head)
-            throws IOException {
-        // Note that we don't attempt to resolve checksum files. ArtifactResolver would be able to
-        // do that for artifacts downloaded from a remote repository, but for artifacts from the
-        // reactor it will trigger an error. It may also do unnecessary attempts to download them
-        // from remote repositories.
-        File file;
+    /**
+     * Determine whether a version of an artifact is known from the plugin index, the reactor or
+     * the metadata resolved previously, without invoking the resolver.
+     *
+     * @param key the {@code groupId:artifactId} key of the artifact
+     */
+    private boolean isKnownVersion(String key, String version) {
+        RenderedMetadata metadata = pluginIndex.getMetadata(key);
+        if (metadata == null) {
+            metadata = reactorIndex.getMetadata(key);
+        }
+        if (metadata == null) {
+            Optional<RenderedMetadata> cachedMetadata = renderedMetadata.peek(key);
+            metadata = cachedMetadata == null ? null : cachedMetadata.orElse(null);
+        }
+        return metadata != null && metadata.hasVersion(version);
+    }
+
+    /** The result of the resolution of an artifact. */
+    record ResolvedArtifact(File file, Metrics.Source source) {}
+
+    private ResolvedArtifact resolveArtifact(String path, ArtifactKey artifact) {
         try {
-            file =
-                    resolver.resolveArtifact(session.getProjectBuildingRequest(), artifact)
-                            .getArtifact()
-                            .getFile();
-        } catch (ArtifactResolverException ex) {
+            // Concurrent requests for the same artifact wait for the first one to complete.
+            return artifactResolutions.execute(artifact, () -> resolveUncachedArtifact(artifact));
+        } catch (ArtifactResolutionException ex) {
             log.debug("{} ({}) couldn't be resolved", path, artifact, ex);
-            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            return;
+            return null;
         }
+    }
 
-        if (checksumType != null) {
-            File checksumFile =
-                    new File(
-                            file.getParent(), String.format("%s.%s", file.getName(), checksumType));
-            if (checksumFile.exists()) {
-                // Just continue and send the existing checksum file.
-                file = checksumFile;
-            } else {
-                MessageDigest digest;
+    /**
+     * Resolve an artifact ahead of any request for it. Requests that arrive while the resolution is
+     * in progress wait for it to complete.
+     *
+     * @return {@code true} if the artifact was resolved or is part of the reactor
+     */
+    boolean prefetch(ArtifactKey artifact) {
+        return reactorIndex.getArtifact(artifact) != null
+                || resolvedArtifacts.contains(artifact)
+                || resolveArtifact(artifact.toString(), artifact) != null;
+    }
+
+    /** Determine whether an artifact can be served without invoking the resolver. */
+    private boolean isAvailable(ArtifactKey artifact) {
+        if (reactorIndex.getArtifact(artifact) != null) {
+            return true;
+        }
+        File file = resolvedArtifacts.peek(artifact);
+        return (file != null && file.isFile()) || lookupPersistentIndex(artifact) != null;
+    }
+
+    /** Get an artifact from the resolution cache, removing it if its file no longer exists. */
+    private File getCachedArtifact(ArtifactKey artifact) {
+        File file = resolvedArtifacts.get(artifact);
+        if (file != null && !file.isFile()) {
+            resolvedArtifacts.remove(artifact);
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * Look up an artifact in the persistent index and add it to the caches if it is still valid.
+     */
+    private File lookupPersistentIndex(ArtifactKey artifact) {
+        PersistentIndex.ArtifactEntry entry = persistentIndex.getArtifact(artifact);
+        if (entry == null) {
+            return null;
+        }
+        File file = entry.file();
+        resolvedArtifacts.put(artifact, file);
+        if (entry.checksums() != null) {
+            digestIndex.put(file.toPath(), entry.size(), entry.lastModified(), entry.checksums());
+        }
+        log.debug("{} found in persistent index: {}", artifact, file);
+        return file;
+    }
+
+    /**
+     * Resolve an artifact unless it has been resolved (or found to be unresolvable) while the
+     * request was waiting for a resolver thread. The caches are checked before the request is
+     * queued, but a resolution of the same artifact may complete in the meantime.
+     */
+    private ResolvedArtifact resolveUncachedArtifact(ArtifactKey artifact)
+            throws ArtifactResolutionException {
+        File file = getCachedArtifact(artifact);
+        if (file != null) {
+            return new ResolvedArtifact(file, Metrics.Source.CACHE);
+        }
+        if (unresolvableArtifacts.get(artifact) != null) {
+            throw new ArtifactResolutionException(
+                    List.of(), artifact + " previously couldn't be resolved", null);
+        }
+        return doResolveArtifact(artifact);
+    }
+
+    private ResolvedArtifact doResolveArtifact(ArtifactKey artifact)
+            throws ArtifactResolutionException {
+        Events.ArtifactResolution event = new Events.ArtifactResolution();
+        event.begin();
+        ArtifactResult result = null;
+        try {
+            try {
+                result = doResolveArtifact(artifact, repositories);
+            } catch (ArtifactResolutionException ex) {
+                if (pluginRepositories == null) {
+                    throw ex;
+                }
                 try {
-                    digest = MessageDigest.getInstance(checksumType);
-                } catch (NoSuchAlgorithmException ex) {
-                    log.error("Could not create message digest", ex);
-                    response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                    return;
+                    result = doResolveArtifact(artifact, pluginRepositories);
+                } catch (ArtifactResolutionException ex2) {
+                    throw ex;
                 }
-                byte[] buffer = new byte[4096];
-                try (FileInputStream in = new FileInputStream(file)) {
-                    int c;
-                    while ((c = in.read(buffer)) != -1) {
-                        digest.update(buffer, 0, c);
+            }
+        } catch (ArtifactResolutionException ex) {
+            unresolvableArtifacts.put(artifact, Boolean.TRUE);
+            throw ex;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.artifact = artifact.toString();
+                event.resolved = result != null;
+                event.commit();
+            }
+        }
+        return cacheResolvedArtifact(artifact, result);
+    }
+
+    private ArtifactResult doResolveArtifact(
+            ArtifactKey artifact, List<RemoteRepository> repositories)
+            throws ArtifactResolutionException {
+        return repositorySystem.resolveArtifact(
+                session.getRepositorySession(),
+                new ArtifactRequest(artifact.toArtifact(), repositories, null));
+    }
+
+    /**
+     * Resolve several artifacts with a single call to the repository system, retrying the
+     * artifacts that couldn't be resolved with the plugin repositories.
+     *
+     * @return the results, in the same order as the artifacts
+     */
+    private List<ArtifactResult> doResolveArtifacts(List<ArtifactKey> artifacts) {
+        Events.ArtifactResolution event = new Events.ArtifactResolution();
+        event.begin();
+        List<ArtifactResult> results = new ArrayList<>(doResolveArtifacts(artifacts, repositories));
+        if (pluginRepositories != null) {
+            List<Integer> unresolved = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                if (!results.get(i).isResolved()) {
+                    unresolved.add(i);
+                }
+            }
+            if (!unresolved.isEmpty()) {
+                List<ArtifactResult> retryResults =
+                        doResolveArtifacts(
+                                unresolved.stream().map(artifacts::get).toList(),
+                                pluginRepositories);
+                for (int i = 0; i < unresolved.size(); i++) {
+                    if (retryResults.get(i).isResolved()) {
+                        results.set(unresolved.get(i), retryResults.get(i));
                     }
                 }
-                String checksum = Hex.encodeHexString(digest.digest(), false);
-                log.debug(
-                        "{} served by computing checksum of {} ({}): {}",
-                        path,
-                        file,
-                        artifact,
-                        checksum);
-                response.getWriter().write(checksum);
-                return;
             }
         }
+        event.end();
+        if (event.shouldCommit()) {
+            event.artifact = artifacts.size() + " artifacts";
+            event.resolved = results.stream().allMatch(ArtifactResult::isResolved);
+            event.commit();
+        }
+        return results;
+    }
 
-        log.debug("{} ({}, checksumType={}) resolved to {}", path, artifact, checksumType, file);
-        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
-            long size = raf.length();
-            response.setContentLengthLong(size);
-            if (!head) {
-                ((HttpOutput) response.getOutputStream())
-                        .sendContent(raf.getChannel().map(MapMode.READ_ONLY, 0, size));
-            }
+    private List<ArtifactResult> doResolveArtifacts(
+            List<ArtifactKey> artifacts, List<RemoteRepository> repositories) {
+        List<ArtifactRequest> requests =
+                artifacts.stream()
+                        .map(
+                                artifact ->
+                                        new ArtifactRequest(
+                                                artifact.toArtifact(), repositories, null))
+                        .toList();
+        try {
+            return repositorySystem.resolveArtifacts(session.getRepositorySession(), requests);
+        } catch (ArtifactResolutionException ex) {
+            // The exception contains the results for all requests, including the successful ones.
+            return ex.getResults();
         }
     }
 
-    private void processMetadataRequest(
-            String path,
-            String groupId,
-            String artifactId,
-            String checksumType,
-            HttpServletResponse response,
-            boolean head)
-            throws IOException, ServletException {
-        String latestVersion;
-        List<String> versions;
-        String key = Plugin.constructKey(groupId, artifactId);
-        Plugin plugin =
-                pluginManagement == null ? null : pluginManagement.getPluginsAsMap().get(key);
-        if (plugin != null) {
-            String version = plugin.getVersion();
-            log.debug("{} ({}) served by generating metadata for version {}", path, key, version);
-            latestVersion = version;
-            versions = Collections.singletonList(version);
+    /** Add a resolved artifact to the caches. */
+    private ResolvedArtifact cacheResolvedArtifact(ArtifactKey artifact, ArtifactResult result) {
+        File file = result.getArtifact().getFile();
+        resolvedArtifacts.put(artifact, file);
+        persistentIndex.putArtifact(artifact, file, null);
+        // The result refers to the local repository if the artifact didn't need to be downloaded.
+        return new ResolvedArtifact(
+                file,
+                result.getRepository() instanceof RemoteRepository
+                        ? Metrics.Source.REMOTE
+                        : Metrics.Source.LOCAL_REPOSITORY);
+    }
+
+    /**
+     * Produces the response to a request. {@link #lookup()} is invoked on the request thread and
+     * answers the request if that is possible without invoking the resolver; otherwise {@link
+     * #resolve()} is invoked on the resolver executor.
+     */
+    private interface RequestHandler {
+        /**
+         * Attempt to answer the request from the caches.
+         *
+         * @return the resource to send, or {@code null} if the request requires resolution
+         */
+        Resource lookup() throws IOException;
+
+        Resource resolve() throws IOException, ServletException;
+
+        Metrics.Kind kind();
+
+        /**
+         * Get the source the resource was obtained from. Only meaningful after {@link #lookup()}
+         * or {@link #resolve()} has returned a resource that exists.
+         */
+        Metrics.Source source();
+    }
+
+    /** Answers rejected and unrecognized requests. */
+    private static final class NotFoundHandler implements RequestHandler {
+        private final Metrics.Kind kind;
+
+        NotFoundHandler(Metrics.Kind kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        public Resource lookup() {
+            return Resource.NOT_FOUND;
+        }
+
+        @Override
+        public Resource resolve() {
+            return Resource.NOT_FOUND;
+        }
+
+        @Override
+        public Metrics.Kind kind() {
+            return kind;
+        }
+
+        @Override
+        public Metrics.Source source() {
+            return Metrics.Source.NOT_FOUND;
+        }
+    }
+
+    private static final Map<Metrics.Kind, RequestHandler> NOT_FOUND_HANDLERS =
+            new EnumMap<>(Metrics.Kind.class);
+
+    static {
+        for (Metrics.Kind kind : Metrics.Kind.values()) {
+            NOT_FOUND_HANDLERS.put(kind, new NotFoundHandler(kind));
+        }
+    }
+
+    /**
+     * Get the handler for a request that is rejected or not recognized, counted as the kind of
+     * request its path suggests.
+     */
+    private static RequestHandler notFoundHandler(
+            ChecksumAlgorithm checksumAlgorithm, boolean metadata) {
+        if (checksumAlgorithm != null) {
+            return NOT_FOUND_HANDLERS.get(Metrics.Kind.CHECKSUM);
+        } else if (metadata) {
+            return NOT_FOUND_HANDLERS.get(Metrics.Kind.METADATA);
         } else {
-            try {
-                VersionRangeRequest request =
-                        new VersionRangeRequest(
-                                new DefaultArtifact(groupId, artifactId, "", "pom", "[0,)"),
-                                RepositoryUtils.toRepos(
-                                        session.getProjectBuildingRequest()
-                                                .getRemoteRepositories()),
-                                null);
-                VersionRangeResult result =
-                        repositorySystem.resolveVersionRange(
-                                session.getRepositorySession(), request);
-                log.debug("Resolved version range {}: {}", request, result.getVersions());
-                if (result.getVersions().isEmpty()) {
-                    response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                    return;
+            return NOT_FOUND_HANDLERS.get(Metrics.Kind.ARTIFACT);
+        }
+    }
+
+    private final class ArtifactRequestHandler implements RequestHandler {
+        private final String path;
+        private final ArtifactKey artifact;
+        private final ChecksumAlgorithm checksumAlgorithm;
+        private Metrics.Source source;
+
+        ArtifactRequestHandler(
+                String path, ArtifactKey artifact, ChecksumAlgorithm checksumAlgorithm) {
+            this.path = path;
+            this.artifact = artifact;
+            this.checksumAlgorithm = checksumAlgorithm;
+        }
+
+        @Override
+        public Resource lookup() throws IOException {
+            File file = reactorIndex.getArtifact(artifact);
+            if (file != null) {
+                log.debug("{} ({}) found in reactor", path, artifact);
+                source = Metrics.Source.INDEX;
+            } else {
+                source = Metrics.Source.CACHE;
+                file = getCachedArtifact(artifact);
+                if (file == null) {
+                    file = lookupPersistentIndex(artifact);
                 }
-                latestVersion = result.getHighestVersion().toString();
-                versions =
-                        result.getVersions().stream()
-                                .map(Version::toString)
-                                .collect(Collectors.toList());
-            } catch (VersionRangeResolutionException ex) {
-                throw new ServletException(ex);
+                if (file == null) {
+                    if (unresolvableArtifacts.get(artifact) != null) {
+                        log.debug("{} ({}) previously couldn't be resolved", path, artifact);
+                        return Resource.NOT_FOUND;
+                    }
+                    return null;
+                }
+            }
+            if (checksumAlgorithm == null) {
+                return toResource(file);
             }
+            Checksums checksums = digestIndex.getCachedChecksums(file);
+            return checksums == null ? null : toResource(file, checksums);
         }
-        if (!head) {
-            MessageDigest digest;
-            OutputStream out;
-            if (checksumType == null) {
-                digest = null;
-                out = response.getOutputStream();
+
+        @Override
+        public Resource resolve() throws IOException {
+            // Note that we don't attempt to resolve checksum files. The resolver would be able
+            // to do that for artifacts downloaded from a remote repository, but for artifacts from
+            // the reactor it will trigger an error. It may also do unnecessary attempts to
+            // download them from remote repositories.
+            File file = reactorIndex.getArtifact(artifact);
+            if (file != null) {
+                source = Metrics.Source.INDEX;
             } else {
-                try {
-                    digest = MessageDigest.getInstance(checksumType);
-                } catch (NoSuchAlgorithmException ex) {
-                    log.error("Could not create message digest", ex);
-                    response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                    return;
+                ResolvedArtifact resolvedArtifact = resolveArtifact(path, artifact);
+                if (resolvedArtifact == null) {
+                    return Resource.NOT_FOUND;
+                }
+                file = resolvedArtifact.file();
+                source = resolvedArtifact.source();
+            }
+            if (checksumAlgorithm == null) {
+                return toResource(file);
+            }
+            Checksums checksums = digestIndex.getChecksums(file);
+            if (reactorIndex.getArtifact(artifact) == null) {
+                persistentIndex.putArtifact(artifact, file, checksums);
+            }
+            return toResource(file, checksums);
+        }
+
+        @Override
+        public Metrics.Kind kind() {
+            return checksumAlgorithm == null ? Metrics.Kind.ARTIFACT : Metrics.Kind.CHECKSUM;
+        }
+
+        @Override
+        public Metrics.Source source() {
+            return source;
+        }
+
+        private Resource toResource(File file) throws IOException {
+            log.debug("{} ({}) resolved to {}", path, artifact, file);
+            seeder.seed(artifact, file);
+            if (artifact.extension().equals("pom")) {
+                speculativePrefetcher.pomServed(artifact, file, speculativeResolver);
+            }
+            BasicFileAttributes attrs =
+                    Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            return Resource.forFile(file, attrs.size(), attrs.lastModifiedTime().toMillis());
+        }
+
+        private Resource toResource(File file, Checksums checksums) {
+            String checksum = checksums.get(checksumAlgorithm);
+            log.debug("{} served from checksums of {} ({}): {}", path, file, artifact, checksum);
+            return Resource.forChecksum(checksum);
+        }
+    }
+
+    private final class MetadataRequestHandler implements RequestHandler {
+        private final String path;
+        private final MetadataPath metadataPath;
+        private final String key;
+        private final ChecksumAlgorithm checksumAlgorithm;
+        private Metrics.Source source = Metrics.Source.INDEX;
+
+        MetadataRequestHandler(
+                String path, MetadataPath metadataPath, ChecksumAlgorithm checksumAlgorithm) {
+            this.path = path;
+            this.metadataPath = metadataPath;
+            key = metadataPath.key();
+            this.checksumAlgorithm = checksumAlgorithm;
+        }
+
+        @Override
+        public Resource lookup() {
+            MetadataPath.Level level = metadataPath.level();
+            if (level == MetadataPath.Level.UNSUPPORTED) {
+                log.debug("Returning 404 for unsupported metadata request {}", path);
+                return Resource.NOT_FOUND;
+            }
+            if (level == MetadataPath.Level.GROUP) {
+                // We never attempt to resolve group level metadata.
+                RenderedMetadata groupMetadata = pluginIndex.getGroupMetadata(key);
+                log.debug("{} ({}) served from plugin index: {}", path, key, groupMetadata != null);
+                return toResource(Optional.ofNullable(groupMetadata));
+            }
+            if (level == MetadataPath.Level.ARTIFACT) {
+                RenderedMetadata pluginMetadata = pluginIndex.getMetadata(key);
+                if (pluginMetadata != null) {
+                    log.debug("{} ({}) served from plugin index", path, key);
+                    return toResource(Optional.of(pluginMetadata));
+                }
+            }
+            RenderedMetadata reactorMetadata = reactorIndex.getMetadata(key);
+            if (reactorMetadata != null) {
+                log.debug("{} ({}) served from reactor", path, key);
+                return toResource(Optional.of(reactorMetadata));
+            }
+            source = Metrics.Source.CACHE;
+            Optional<RenderedMetadata> metadata = renderedMetadata.get(key);
+            if (metadata == null) {
+                metadata = persistentIndex.getMetadata(metadataPath.level(), key);
+                if (metadata == null) {
+                    return null;
                 }
-                out = new DigestOutputStream(NullOutputStream.INSTANCE, digest);
+                log.debug("{} ({}) found in persistent index", path, key);
+                renderedMetadata.put(key, metadata);
             }
+            return toResource(metadata);
+        }
+
+        @Override
+        public Resource resolve() throws ServletException {
+            String groupId = metadataPath.groupId();
+            String artifactId = metadataPath.artifactId();
+            ResolvedMetadata resolvedMetadata;
             try {
-                XMLStreamWriter writer = XMLOutputFactory.newFactory().createXMLStreamWriter(out);
-                writer.writeStartDocument("utf-8", "1.0");
-                writer.writeStartElement("metadata");
-                writer.writeStartElement("groupId");
-                writer.writeCharacters(groupId);
-                writer.writeEndElement();
-                writer.writeStartElement("artifactId");
-                writer.writeCharacters(artifactId);
-                writer.writeEndElement();
-                writer.writeStartElement("versioning");
-                writer.writeStartElement("latest");
-                writer.writeCharacters(latestVersion);
-                writer.writeEndElement();
-                writer.writeStartElement("versions");
-                for (String version : versions) {
-                    writer.writeStartElement("version");
-                    writer.writeCharacters(version);
-                    writer.writeEndElement();
+                if (metadataPath.level() == MetadataPath.Level.VERSION) {
+                    resolvedMetadata =
+                            metadataResolutions.execute(
+                                    key,
+                                    () -> {
+                                        ResolvedMetadata metadata = getResolvedMetadata();
+                                        return metadata != null
+                                                ? metadata
+                                                : resolveSnapshotMetadata(
+                                                        path,
+                                                        groupId,
+                                                        artifactId,
+                                                        metadataPath.version(),
+                                                        key);
+                                    });
+                } else {
+                    resolvedMetadata =
+                            metadataResolutions.execute(
+                                    key,
+                                    () -> {
+                                        ResolvedMetadata metadata = getResolvedMetadata();
+                                        return metadata != null
+                                                ? metadata
+                                                : resolveMetadata(groupId, artifactId, key);
+                                    });
                 }
-                writer.writeEndElement();
-                writer.writeEndElement();
-                writer.writeEndElement();
-                writer.writeEndDocument();
-                writer.flush();
-            } catch (XMLStreamException ex) {
+            } catch (VersionRangeResolutionException | XMLStreamException ex) {
                 throw new ServletException(ex);
             }
-            if (digest != null) {
-                response.getWriter().write(Hex.encodeHexString(digest.digest(), false));
+            source = resolvedMetadata.source();
+            return toResource(resolvedMetadata.metadata());
+        }
+
+        /**
+         * Get the metadata from the cache if it has been resolved while the request was waiting
+         * for a resolver thread. The cache is checked before the request is queued, but a
+         * resolution of the same metadata may complete in the meantime.
+         *
+         * @return the metadata, or {@code null} if it needs to be resolved
+         */
+        private ResolvedMetadata getResolvedMetadata() {
+            Optional<RenderedMetadata> metadata = renderedMetadata.get(key);
+            return metadata == null ? null : new ResolvedMetadata(metadata, Metrics.Source.CACHE);
+        }
+
+        @Override
+        public Metrics.Kind kind() {
+            return checksumAlgorithm == null ? Metrics.Kind.METADATA : Metrics.Kind.CHECKSUM;
+        }
+
+        @Override
+        public Metrics.Source source() {
+            return source;
+        }
+
+        private Resource toResource(Optional<RenderedMetadata> metadata) {
+            if (metadata.isEmpty()) {
+                return Resource.NOT_FOUND;
+            } else if (checksumAlgorithm == null) {
+                return Resource.forMetadata(metadata.get());
+            } else {
+                return Resource.forChecksum(metadata.get().getChecksums().get(checksumAlgorithm));
             }
         }
     }
+
+    /** The result of the resolution of metadata. */
+    private record ResolvedMetadata(Optional<RenderedMetadata> metadata, Metrics.Source source) {}
+
+    private ResolvedMetadata resolveMetadata(String groupId, String artifactId, String key)
+            throws VersionRangeResolutionException, XMLStreamException {
+        VersionRangeRequest request =
+                new VersionRangeRequest(
+                        new DefaultArtifact(groupId, artifactId, "", "pom", "[0,)"),
+                        repositories,
+                        null);
+        Events.MetadataResolution event = new Events.MetadataResolution();
+        event.begin();
+        VersionRangeResult result =
+                repositorySystem.resolveVersionRange(session.getRepositorySession(), request);
+        if (result.getVersions().isEmpty() && pluginRepositories != null) {
+            request.setRepositories(pluginRepositories);
+            result = repositorySystem.resolveVersionRange(session.getRepositorySession(), request);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.key = key;
+            event.versions = result.getVersions().size();
+            event.commit();
+        }
+        log.debug("Resolved version range {}: {}", request, result.getVersions());
+        if (result.getVersions().isEmpty()) {
+            cacheMetadata(MetadataPath.Level.ARTIFACT, key, Optional.empty());
+            return new ResolvedMetadata(Optional.empty(), Metrics.Source.NOT_FOUND);
+        }
+        String latestVersion = result.getHighestVersion().toString();
+        List<String> versions =
+                result.getVersions().stream().map(Version::toString).collect(Collectors.toList());
+        Optional<RenderedMetadata> metadata =
+                Optional.of(
+                        RenderedMetadata.forVersions(groupId, artifactId, latestVersion, versions));
+        cacheMetadata(MetadataPath.Level.ARTIFACT, key, metadata);
+        // Versions only known from the local repository (e.g. installed artifacts) are reported
+        // with the local repository. Note that a version found in the metadata of a remote
+        // repository counts as remote even if the resolver used a copy cached in the local
+        // repository.
+        boolean remote = false;
+        for (Version version : result.getVersions()) {
+            if (result.getRepository(version) instanceof RemoteRepository) {
+                remote = true;
+                break;
+            }
+        }
+        return new ResolvedMetadata(
+                metadata, remote ? Metrics.Source.REMOTE : Metrics.Source.LOCAL_REPOSITORY);
+    }
+
+    /**
+     * Generate version level metadata for a snapshot that is not in the reactor, based on the
+     * resolved POM.
+     */
+    private ResolvedMetadata resolveSnapshotMetadata(
+            String path, String groupId, String artifactId, String version, String key)
+            throws XMLStreamException {
+        ArtifactKey pom = new ArtifactKey(groupId, artifactId, version, null, "pom");
+        ResolvedArtifact resolvedArtifact = resolveArtifact(path, pom);
+        Optional<RenderedMetadata> metadata;
+        Metrics.Source source;
+        if (resolvedArtifact == null) {
+            metadata = Optional.empty();
+            source = Metrics.Source.NOT_FOUND;
+        } else {
+            // The metadata is generated from the POM, so it comes from where the POM came from.
+            source = resolvedArtifact.source();
+            metadata =
+                    Optional.of(
+                            RenderedMetadata.forSnapshot(
+                                    groupId,
+                                    artifactId,
+                                    version,
+                                    List.of(pom),
+                                    resolvedArtifact.file().lastModified()));
+        }
+        cacheMetadata(MetadataPath.Level.VERSION, key, metadata);
+        return new ResolvedMetadata(metadata, source);
+    }
+
+    private void cacheMetadata(
+            MetadataPath.Level level, String key, Optional<RenderedMetadata> metadata) {
+        renderedMetadata.put(key, metadata);
+        persistentIndex.putMetadata(level, key, metadata);
+    }
 }
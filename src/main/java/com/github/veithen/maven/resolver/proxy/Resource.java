@@ -0,0 +1,165 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The content sent in response to a request, together with the validators used for conditional
+ * requests.
+ */
+final class Resource {
+    static final Resource NOT_FOUND = new Resource(null, null, null, 0, -1, null);
+
+    private final File file;
+    private final byte[] bytes;
+    private final RenderedMetadata metadata;
+    private final long length;
+    private final long lastModified;
+    private final String etag;
+
+    private Resource(
+            File file,
+            byte[] bytes,
+            RenderedMetadata metadata,
+            long length,
+            long lastModified,
+            String etag) {
+        this.file = file;
+        this.bytes = bytes;
+        this.metadata = metadata;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.etag = etag;
+    }
+
+    /**
+     * Create a resource for a file. The entity tag is always derived from the size and last
+     * modification time of the file, so that it doesn't change depending on whether the checksums
+     * of the file happen to be known.
+     */
+    static Resource forFile(File file, long size, long lastModified) {
+        String etag = quote(Long.toHexString(size) + "-" + Long.toHexString(lastModified));
+        return new Resource(file, null, null, size, lastModified, etag);
+    }
+
+    static Resource forMetadata(RenderedMetadata metadata) {
+        byte[] content = metadata.getContent();
+        return new Resource(
+                null,
+                content,
+                metadata,
+                content.length,
+                -1,
+                quote(metadata.getChecksums().get(ChecksumAlgorithm.SHA1)));
+    }
+
+    static Resource forChecksum(String checksum) {
+        byte[] content = checksum.getBytes(StandardCharsets.US_ASCII);
+        return new Resource(null, content, null, content.length, -1, null);
+    }
+
+    private static String quote(String tag) {
+        return "\"" + tag + "\"";
+    }
+
+    boolean exists() {
+        return file != null || bytes != null;
+    }
+
+    long getLength() {
+        return length;
+    }
+
+    /**
+     * Get the last modification time of the resource.
+     *
+     * @return the last modification time, or -1 if unknown
+     */
+    long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Get the file name of the resource, used to determine whether it is compressible.
+     *
+     * @return the file name, or {@code null} if the resource is not compressible
+     */
+    String getName() {
+        if (file != null) {
+            return file.getName();
+        } else if (metadata != null) {
+            return "maven-metadata.xml";
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Get the entity tag of the resource.
+     *
+     * @return the (quoted) entity tag, or {@code null} if the resource has no entity tag
+     */
+    String getETag() {
+        return etag;
+    }
+
+    /**
+     * Get the content of the resource. The content of files is looked up in the given cache. The
+     * returned content must be released after use.
+     */
+    ContentCache.Content getContent(ContentCache contentCache) throws IOException {
+        if (file == null) {
+            return new ContentCache.Content(ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+        }
+        return contentCache.get(file.toPath(), length, lastModified);
+    }
+
+    /**
+     * Determine whether the compressed content of the resource can be cached, which is a
+     * prerequisite for sending it compressed.
+     */
+    boolean hasCompressedContent(ContentCache contentCache) {
+        return metadata != null || (file != null && contentCache.isHeapCached(length));
+    }
+
+    /** Get the gzip compressed content of the resource. */
+    ContentCache.Content getCompressedContent(ContentCache contentCache) throws IOException {
+        if (metadata != null) {
+            return new ContentCache.Content(
+                    ByteBuffer.wrap(metadata.getCompressedContent()).asReadOnlyBuffer());
+        }
+        return contentCache.getCompressed(file.toPath(), length, lastModified);
+    }
+
+    @Override
+    public String toString() {
+        if (file != null) {
+            return file.toString();
+        } else if (bytes != null) {
+            return String.format("%d bytes", bytes.length);
+        } else {
+            return "not found";
+        }
+    }
+}
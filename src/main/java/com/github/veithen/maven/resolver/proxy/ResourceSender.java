@@ -0,0 +1,342 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.LongConsumer;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.ee10.servlet.HttpOutput;
+import org.eclipse.jetty.util.Callback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends {@link Resource}s, taking into account conditional requests ({@code If-None-Match}, {@code
+ * If-Modified-Since}) and byte range requests.
+ */
+final class ResourceSender {
+    private static final Logger log = LoggerFactory.getLogger(ResourceSender.class);
+
+    /** Requests with more ranges than this get the full content. */
+    private static final int MAX_RANGES = 16;
+
+    /**
+     * The maximum total size of a multipart range response. The parts are assembled in memory, so
+     * larger responses are sent in full instead.
+     */
+    private static final long MAX_MULTIPART_SIZE = 16 * 1024 * 1024;
+
+    private static final String BOUNDARY = UUID.randomUUID().toString();
+
+    private static final String PART_HEADER =
+            "\r\n--%s\r\nContent-Type: application/octet-stream\r\nContent-Range: %s\r\n\r\n";
+
+    private final ContentCache contentCache;
+    private final Compression compression;
+
+    ResourceSender(ContentCache contentCache, Compression compression) {
+        this.contentCache = contentCache;
+        this.compression = compression;
+    }
+
+    /**
+     * Send a resource.
+     *
+     * @return the number of content bytes sent
+     */
+    long send(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Resource resource,
+            boolean head)
+            throws IOException {
+        ContentCache.Content content = prepare(request, response, resource, head);
+        if (content == null) {
+            return 0;
+        }
+        try {
+            ByteBuffer buffer = content.getBuffer();
+            int bytes = buffer.remaining();
+            ((HttpOutput) response.getOutputStream()).sendContent(buffer);
+            return bytes;
+        } finally {
+            content.release();
+        }
+    }
+
+    /**
+     * Send a resource without blocking and complete the given {@link AsyncContext}.
+     *
+     * @param onComplete invoked with the number of content bytes sent (0 if sending failed) before
+     *     the {@link AsyncContext} is completed
+     */
+    void sendAsync(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Resource resource,
+            boolean head,
+            AsyncContext asyncContext,
+            LongConsumer onComplete) {
+        try {
+            ContentCache.Content content = prepare(request, response, resource, head);
+            if (content != null) {
+                ByteBuffer buffer = content.getBuffer();
+                int bytes = buffer.remaining();
+                ((HttpOutput) response.getOutputStream())
+                        .sendContent(
+                                buffer,
+                                Callback.from(
+                                        () -> {
+                                            content.release();
+                                            onComplete.accept(bytes);
+                                            asyncContext.complete();
+                                        },
+                                        ex -> {
+                                            log.debug("Failed to send {}", resource, ex);
+                                            content.release();
+                                            onComplete.accept(0);
+                                            asyncContext.complete();
+                                        }));
+                return;
+            }
+        } catch (IOException ex) {
+            log.error("An error occurred in the resolver proxy", ex);
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+        onComplete.accept(0);
+        asyncContext.complete();
+    }
+
+    /**
+     * Set the response headers for the given resource and return the content to send, if any. The
+     * caller is responsible for releasing the returned content.
+     */
+    private ContentCache.Content prepare(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Resource resource,
+            boolean head)
+            throws IOException {
+        if (!resource.exists()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        long length = resource.getLength();
+        long lastModified = resource.getLastModified();
+        String etag = resource.getETag();
+        boolean gzip = false;
+        if (compression.isCompressible(resource.getName(), length)
+                && resource.hasCompressedContent(contentCache)) {
+            response.setHeader("Vary", "Accept-Encoding");
+            // Range requests are always answered from the uncompressed content.
+            gzip = request.getHeader("Range") == null && Compression.acceptsGzip(request);
+            if (gzip && etag != null) {
+                // The compressed representation needs its own entity tag.
+                etag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+            }
+        }
+        if (etag != null) {
+            response.setHeader("ETag", etag);
+        }
+        if (lastModified != -1) {
+            response.setDateHeader("Last-Modified", lastModified);
+        }
+        response.setHeader("Accept-Ranges", "bytes");
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return null;
+        }
+        if (gzip) {
+            ContentCache.Content content = resource.getCompressedContent(contentCache);
+            response.setHeader("Content-Encoding", "gzip");
+            response.setContentLength(content.getBuffer().remaining());
+            if (head) {
+                content.release();
+                return null;
+            }
+            return content;
+        }
+        List<long[]> ranges = head ? null : getRanges(request, etag, lastModified, length);
+        if (ranges == null) {
+            // Get the content first: this fails if the file no longer has the expected length.
+            ContentCache.Content content = head ? null : resource.getContent(contentCache);
+            response.setContentLengthLong(length);
+            return content;
+        }
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader("Content-Range", "bytes */" + length);
+            return null;
+        }
+        ContentCache.Content content = resource.getContent(contentCache);
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            response.setHeader("Content-Range", contentRange(range, length));
+            response.setContentLengthLong(range[1] - range[0] + 1);
+            return content.slice((int) range[0], (int) (range[1] - range[0] + 1));
+        }
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long size = 0;
+        for (long[] range : ranges) {
+            String partHeader = String.format(PART_HEADER, BOUNDARY, contentRange(range, length));
+            byte[] partHeaderBytes = partHeader.getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeaderBytes);
+            size += partHeaderBytes.length + range[1] - range[0] + 1;
+        }
+        byte[] trailer =
+                String.format("\r\n--%s--\r\n", BOUNDARY).getBytes(StandardCharsets.US_ASCII);
+        size += trailer.length;
+        ByteBuffer body = ByteBuffer.allocate((int) size);
+        ByteBuffer buffer = content.getBuffer();
+        try {
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                body.put(partHeaders.get(i));
+                body.put(buffer.slice((int) range[0], (int) (range[1] - range[0] + 1)));
+            }
+        } finally {
+            content.release();
+        }
+        body.put(trailer);
+        body.flip();
+        response.setContentType("multipart/byteranges; boundary=" + BOUNDARY);
+        response.setContentLengthLong(size);
+        return new ContentCache.Content(body);
+    }
+
+    private static boolean isNotModified(
+            HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            // If-None-Match takes precedence over If-Modified-Since.
+            return etag != null && matchesETag(ifNoneMatch, etag);
+        }
+        if (lastModified != -1) {
+            long ifModifiedSince = getDateHeader(request, "If-Modified-Since");
+            return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+        }
+        return false;
+    }
+
+    private static boolean matchesETag(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Determine the byte ranges to send.
+     *
+     * @return the satisfiable ranges (as inclusive start and end offsets), an empty list if none of
+     *     the requested ranges is satisfiable, or {@code null} if the full content should be sent
+     */
+    private static List<long[]> getRanges(
+            HttpServletRequest request, String etag, long lastModified, long length) {
+        String header = request.getHeader("Range");
+        if (header == null || !header.startsWith("bytes=")) {
+            return null;
+        }
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange != null) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                // Only strong validators can be used with If-Range.
+                if (!ifRange.equals(etag)) {
+                    return null;
+                }
+            } else {
+                long date = getDateHeader(request, "If-Range");
+                if (date == -1 || lastModified == -1 || lastModified / 1000 != date / 1000) {
+                    return null;
+                }
+            }
+        }
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<long[]> ranges = new ArrayList<>(specs.length);
+        long size = 0;
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash == -1) {
+                return null;
+            }
+            long start;
+            long end;
+            try {
+                if (dash == 0) {
+                    long suffixLength = Long.parseLong(spec.substring(1));
+                    start = Math.max(0, length - suffixLength);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    if (dash == spec.length() - 1) {
+                        end = length - 1;
+                    } else {
+                        end = Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+                    }
+                    if (end < start && start < length) {
+                        return null;
+                    }
+                }
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+            if (start < length && start <= end) {
+                ranges.add(new long[] {start, end});
+                size += end - start + 1;
+            }
+        }
+        if (ranges.size() > 1 && size > MAX_MULTIPART_SIZE) {
+            return null;
+        }
+        return ranges;
+    }
+
+    private static String contentRange(long[] range, long length) {
+        return String.format("bytes %d-%d/%d", range[0], range[1], length);
+    }
+}
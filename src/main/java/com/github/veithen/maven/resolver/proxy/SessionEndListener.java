@@ -0,0 +1,213 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.execution.MavenSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops the proxy servers that are still running when the Maven session ends. This covers projects
+ * that fail before executing the stop goal (e.g. with {@code --fail-at-end}) as well as
+ * long-running Maven processes (e.g. mvnd), where the server would otherwise outlive the build.
+ * Plugins can't contribute lifecycle participants unless they are declared as build extensions, so
+ * the listener is installed by wrapping the execution listener of the session, to which all
+ * events are forwarded.
+ */
+final class SessionEndListener implements ExecutionListener {
+    private static final Logger log = LoggerFactory.getLogger(SessionEndListener.class);
+
+    private final ExecutionListener parent;
+    private final List<ProxyServer> servers = new ArrayList<>();
+
+    private SessionEndListener(ExecutionListener parent) {
+        this.parent = parent;
+    }
+
+    /** Ensure that the given server is stopped at the latest when the session ends. */
+    static synchronized void register(MavenSession session, ProxyServer server) {
+        ExecutionListener listener = session.getRequest().getExecutionListener();
+        SessionEndListener sessionEndListener;
+        if (listener instanceof SessionEndListener) {
+            sessionEndListener = (SessionEndListener) listener;
+        } else {
+            sessionEndListener = new SessionEndListener(listener);
+            session.getRequest().setExecutionListener(sessionEndListener);
+        }
+        sessionEndListener.add(server);
+    }
+
+    /**
+     * Forget a server that has been stopped, so that it is not kept reachable until the session
+     * ends.
+     */
+    static synchronized void unregister(MavenSession session, ProxyServer server) {
+        ExecutionListener listener = session.getRequest().getExecutionListener();
+        if (listener instanceof SessionEndListener) {
+            ((SessionEndListener) listener).remove(server);
+        }
+    }
+
+    private synchronized void add(ProxyServer server) {
+        servers.add(server);
+    }
+
+    private synchronized void remove(ProxyServer server) {
+        servers.remove(server);
+    }
+
+    @Override
+    public void sessionEnded(ExecutionEvent event) {
+        List<ProxyServer> servers;
+        synchronized (this) {
+            servers = new ArrayList<>(this.servers);
+            this.servers.clear();
+        }
+        for (ProxyServer server : servers) {
+            try {
+                if (server.stop()) {
+                    log.info("Resolver proxy stopped at the end of the session");
+                }
+            } catch (Exception ex) {
+                log.warn("Failed to stop embedded Jetty server: {}", ex.getMessage(), ex);
+            }
+        }
+        if (parent != null) {
+            parent.sessionEnded(event);
+        }
+    }
+
+    @Override
+    public void projectDiscoveryStarted(ExecutionEvent event) {
+        if (parent != null) {
+            parent.projectDiscoveryStarted(event);
+        }
+    }
+
+    @Override
+    public void sessionStarted(ExecutionEvent event) {
+        if (parent != null) {
+            parent.sessionStarted(event);
+        }
+    }
+
+    @Override
+    public void projectSkipped(ExecutionEvent event) {
+        if (parent != null) {
+            parent.projectSkipped(event);
+        }
+    }
+
+    @Override
+    public void projectStarted(ExecutionEvent event) {
+        if (parent != null) {
+            parent.projectStarted(event);
+        }
+    }
+
+    @Override
+    public void projectSucceeded(ExecutionEvent event) {
+        if (parent != null) {
+            parent.projectSucceeded(event);
+        }
+    }
+
+    @Override
+    public void projectFailed(ExecutionEvent event) {
+        if (parent != null) {
+            parent.projectFailed(event);
+        }
+    }
+
+    @Override
+    public void mojoSkipped(ExecutionEvent event) {
+        if (parent != null) {
+            parent.mojoSkipped(event);
+        }
+    }
+
+    @Override
+    public void mojoStarted(ExecutionEvent event) {
+        if (parent != null) {
+            parent.mojoStarted(event);
+        }
+    }
+
+    @Override
+    public void mojoSucceeded(ExecutionEvent event) {
+        if (parent != null) {
+            parent.mojoSucceeded(event);
+        }
+    }
+
+    @Override
+    public void mojoFailed(ExecutionEvent event) {
+        if (parent != null) {
+            parent.mojoFailed(event);
+        }
+    }
+
+    @Override
+    public void forkStarted(ExecutionEvent event) {
+        if (parent != null) {
+            parent.forkStarted(event);
+        }
+    }
+
+    @Override
+    public void forkSucceeded(ExecutionEvent event) {
+        if (parent != null) {
+            parent.forkSucceeded(event);
+        }
+    }
+
+    @Override
+    public void forkFailed(ExecutionEvent event) {
+        if (parent != null) {
+            parent.forkFailed(event);
+        }
+    }
+
+    @Override
+    public void forkedProjectStarted(ExecutionEvent event) {
+        if (parent != null) {
+            parent.forkedProjectStarted(event);
+        }
+    }
+
+    @Override
+    public void forkedProjectSucceeded(ExecutionEvent event) {
+        if (parent != null) {
+            parent.forkedProjectSucceeded(event);
+        }
+    }
+
+    @Override
+    public void forkedProjectFailed(ExecutionEvent event) {
+        if (parent != null) {
+            parent.forkedProjectFailed(event);
+        }
+    }
+}
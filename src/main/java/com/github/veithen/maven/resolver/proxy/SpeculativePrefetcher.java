@@ -0,0 +1,288 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Speculatively resolves the POMs that an invoked build is likely to request next after fetching a
+ * given POM, namely its parent, its imported BOMs and the POMs of its direct (non optional,
+ * compile or runtime scope) dependencies. The work queue has a bounded depth (tasks are dropped if
+ * it is full) and the total number of speculative resolutions is limited by a budget.
+ */
+final class SpeculativePrefetcher {
+    private static final Logger log = LoggerFactory.getLogger(SpeculativePrefetcher.class);
+
+    private static final Pattern EXPRESSION = Pattern.compile("\\$\\{([^}]+)\\}");
+
+    static final SpeculativePrefetcher DISABLED = new SpeculativePrefetcher(0, 0, 0);
+
+    /** Resolves artifacts on behalf of the prefetcher. */
+    interface Resolver {
+        /** Determine whether an artifact can be served without invoking the resolver. */
+        boolean isAvailable(ArtifactKey artifact);
+
+        /**
+         * Resolve an artifact.
+         *
+         * @return {@code true} if the artifact has been resolved by this invocation, {@code false}
+         *     if it couldn't be resolved or no resolution was necessary
+         */
+        boolean resolve(ArtifactKey artifact);
+    }
+
+    private final int budget;
+    private final ThreadPoolExecutor executor;
+    private final Set<ArtifactKey> analyzed = ConcurrentHashMap.newKeySet();
+    /** The artifacts that have been resolved speculatively and not requested yet. */
+    private final Set<ArtifactKey> pending = ConcurrentHashMap.newKeySet();
+    private final Set<ArtifactKey> submitted = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger remainingBudget;
+    private final LongAdder resolved = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param threads the number of threads performing speculative resolutions
+     * @param queueSize the maximum number of queued tasks
+     * @param budget the maximum number of speculative resolutions; 0 disables speculative prefetch
+     */
+    SpeculativePrefetcher(int threads, int queueSize, int budget) {
+        this.budget = budget;
+        remainingBudget = new AtomicInteger(budget);
+        if (budget == 0) {
+            executor = null;
+            return;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor =
+                new ThreadPoolExecutor(
+                        threads,
+                        threads,
+                        0,
+                        TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(Math.max(queueSize, 1)),
+                        runnable -> {
+                            Thread thread =
+                                    new Thread(
+                                            runnable,
+                                            "resolver-proxy-speculative-"
+                                                    + threadNumber.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    /**
+     * Notify that a POM has been served.
+     *
+     * @param pom the artifact key of the POM
+     * @param file the POM file
+     * @param resolver resolves artifacts on behalf of the prefetcher
+     */
+    void pomServed(ArtifactKey pom, File file, Resolver resolver) {
+        if (executor != null && remainingBudget.get() > 0 && analyzed.add(pom)) {
+            execute(() -> analyze(file, resolver));
+        }
+    }
+
+    /** Notify that an artifact has been requested, to determine the hit ratio. */
+    void artifactRequested(ArtifactKey artifact) {
+        if (executor != null && pending.remove(artifact)) {
+            hits.increment();
+        }
+    }
+
+    private boolean execute(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException ex) {
+            // Either the queue is full or the proxy is being stopped.
+            if (!executor.isShutdown()) {
+                dropped.increment();
+            }
+            return false;
+        }
+    }
+
+    private void analyze(File file, Resolver resolver) {
+        Model model;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            model = new MavenXpp3Reader().read(in, false);
+        } catch (IOException | XmlPullParserException ex) {
+            log.debug("Failed to read {}", file, ex);
+            return;
+        }
+        Map<String, String> properties = new HashMap<>();
+        model.getProperties()
+                .forEach((key, value) -> properties.put((String) key, (String) value));
+        Parent parent = model.getParent();
+        if (parent != null) {
+            properties.put("project.parent.version", parent.getVersion());
+            submit(parent.getGroupId(), parent.getArtifactId(), parent.getVersion(), resolver);
+        }
+        String groupId = model.getGroupId();
+        String version = model.getVersion();
+        if (parent != null) {
+            groupId = groupId == null ? parent.getGroupId() : groupId;
+            version = version == null ? parent.getVersion() : version;
+        }
+        properties.put("project.groupId", groupId);
+        properties.put("project.version", version);
+        DependencyManagement dependencyManagement = model.getDependencyManagement();
+        if (dependencyManagement != null) {
+            for (Dependency dependency : dependencyManagement.getDependencies()) {
+                if ("import".equals(dependency.getScope())) {
+                    submit(dependency, properties, resolver);
+                }
+            }
+        }
+        for (Dependency dependency : model.getDependencies()) {
+            String scope = dependency.getScope();
+            if (!dependency.isOptional()
+                    && (scope == null || scope.equals("compile") || scope.equals("runtime"))) {
+                submit(dependency, properties, resolver);
+            }
+        }
+    }
+
+    private void submit(
+            Dependency dependency,
+            Map<String, String> properties,
+            Resolver resolver) {
+        String version = interpolate(dependency.getVersion(), properties);
+        if (version != null) {
+            submit(
+                    interpolate(dependency.getGroupId(), properties),
+                    dependency.getArtifactId(),
+                    version,
+                    resolver);
+        }
+    }
+
+    /**
+     * Replace expressions referring to the given properties.
+     *
+     * @return the interpolated value, or {@code null} if the value is {@code null} or contains an
+     *     expression that can't be resolved
+     */
+    private static String interpolate(String value, Map<String, String> properties) {
+        for (int i = 0; value != null && value.contains("${"); i++) {
+            if (i == 10) {
+                return null;
+            }
+            Matcher matcher = EXPRESSION.matcher(value);
+            StringBuilder buffer = new StringBuilder();
+            while (matcher.find()) {
+                String replacement = properties.get(matcher.group(1));
+                if (replacement == null) {
+                    return null;
+                }
+                matcher.appendReplacement(buffer, Matcher.quoteReplacement(replacement));
+            }
+            matcher.appendTail(buffer);
+            value = buffer.toString();
+        }
+        return value;
+    }
+
+    private void submit(
+            String groupId, String artifactId, String version, Resolver resolver) {
+        if (groupId == null || version == null || version.startsWith("[")) {
+            return;
+        }
+        ArtifactKey pom = new ArtifactKey(groupId, artifactId, version, null, "pom");
+        if (analyzed.contains(pom) || !submitted.add(pom)) {
+            return;
+        }
+        // Artifacts that are already available don't need speculative work and don't use budget.
+        if (resolver.isAvailable(pom) || remainingBudget.getAndDecrement() <= 0) {
+            return;
+        }
+        boolean queued =
+                execute(
+                        () -> {
+                            if (resolver.isAvailable(pom)) {
+                                // Requested and resolved while the task was queued.
+                                remainingBudget.incrementAndGet();
+                                return;
+                            }
+                            // Add the POM before resolving it so that a request joining the
+                            // resolution counts as a hit.
+                            pending.add(pom);
+                            if (resolver.resolve(pom)) {
+                                resolved.increment();
+                            } else {
+                                pending.remove(pom);
+                            }
+                        });
+        if (!queued) {
+            remainingBudget.incrementAndGet();
+        }
+    }
+
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        long resolvedCount = resolved.sum();
+        long hitCount = hits.sum();
+        return String.format(
+                "%d POMs analyzed, %d resolved, %d dropped, %d hits (%.1f%%), budget %d/%d used",
+                analyzed.size(),
+                resolvedCount,
+                dropped.sum(),
+                hitCount,
+                resolvedCount == 0 ? 0.0 : 100.0 * hitCount / resolvedCount,
+                Math.min(budget - remainingBudget.get(), budget),
+                budget);
+    }
+}
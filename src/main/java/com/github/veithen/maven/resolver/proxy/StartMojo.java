@@ -22,27 +22,47 @@ package com.github.veithen.maven.resolver.proxy;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.DefaultProjectBuildingRequest;
 import org.apache.maven.project.MavenProject;
-import org.apache.maven.shared.transfer.artifact.resolve.ArtifactResolver;
+import org.apache.maven.project.ProjectBuildingRequest;
 import org.eclipse.aether.RepositorySystem;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.ErrorHandler;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
@@ -52,8 +72,13 @@ import org.eclipse.jetty.ee10.servlet.ServletHolder;
 public class StartMojo extends AbstractMojo {
     private static final Logger log = LoggerFactory.getLogger(StartMojo.class);
 
+    /** The transport selection in the bundled settings file, removed if no transport is chosen. */
+    private static final Pattern TRANSPORT_PROPERTY =
+            Pattern.compile(
+                    "\\s*<properties>\\s*<maven\\.resolver\\.transport>@resolverProxyTransport@"
+                            + "</maven\\.resolver\\.transport>\\s*</properties>");
+
     @Component private RepositorySystem repositorySystem;
-    @Component private ArtifactResolver resolver;
 
     @Parameter(property = "project", required = true, readonly = true)
     private MavenProject project;
@@ -61,6 +86,9 @@ public class StartMojo extends AbstractMojo {
     @Parameter(property = "session", required = true, readonly = true)
     private MavenSession session;
 
+    @Parameter(defaultValue = "${plugin}", required = true, readonly = true)
+    private PluginDescriptor pluginDescriptor;
+
     /** The HTTP port to use for the resolver proxy; for debugging purposes only. */
     @Parameter(property = "resolverProxyPort", readonly = true)
     private int resolverProxyPort = -1;
@@ -71,23 +99,396 @@ public class StartMojo extends AbstractMojo {
     @Parameter(defaultValue = "${project.build.directory}/it-repo", readonly = true)
     private File localRepositoryPath;
 
+    /** The maximum number of resolved artifacts to remember. */
+    @Parameter(property = "resolverProxy.resolutionCacheSize", defaultValue = "10000")
+    private int resolutionCacheSize;
+
+    /**
+     * The maximum number of artifacts to remember as unresolvable. Set this to 0 to always retry
+     * the resolution of artifacts that were not found.
+     */
+    @Parameter(property = "resolverProxy.notFoundCacheSize", defaultValue = "1000")
+    private int notFoundCacheSize;
+
+    /** The time (in seconds) after which an artifact that was not found is resolved again. */
+    @Parameter(property = "resolverProxy.notFoundCacheTtl", defaultValue = "60")
+    private int notFoundCacheTtl;
+
+    /** The maximum number of files whose checksums are remembered. */
+    @Parameter(property = "resolverProxy.digestIndexSize", defaultValue = "10000")
+    private int digestIndexSize;
+
+    /** The maximum number of generated {@code maven-metadata.xml} documents to remember. */
+    @Parameter(property = "resolverProxy.metadataCacheSize", defaultValue = "1000")
+    private int metadataCacheSize;
+
+    /** The time (in seconds) after which generated metadata is resolved again. */
+    @Parameter(property = "resolverProxy.metadataCacheTtl", defaultValue = "300")
+    private int metadataCacheTtl;
+
+    /**
+     * The maximum amount of memory (in MiB) used to keep the content of small files on the heap.
+     */
+    @Parameter(property = "resolverProxy.contentCacheSize", defaultValue = "64")
+    private int contentCacheSize;
+
+    /**
+     * The maximum size (in KiB) of a file whose content is kept on the heap. Larger files are
+     * memory mapped.
+     */
+    @Parameter(property = "resolverProxy.contentCacheMaxFileSize", defaultValue = "256")
+    private int contentCacheMaxFileSize;
+
+    /**
+     * The maximum number of memory mapped files to keep. A mapping is released when it is evicted
+     * and no longer used by a pending response.
+     */
+    @Parameter(property = "resolverProxy.maxMappedFiles", defaultValue = "128")
+    private int maxMappedFiles;
+
+    /**
+     * Whether to gzip compress responses for clients that accept it. Only files whose content is
+     * kept on the heap (see {@code contentCacheMaxFileSize}) and generated metadata are
+     * compressed; the compressed form is computed once and cached.
+     */
+    @Parameter(property = "resolverProxy.compression", defaultValue = "false")
+    private boolean compression;
+
+    /** The minimum size (in bytes) of a response to be compressed. */
+    @Parameter(property = "resolverProxy.compressionMinSize", defaultValue = "1024")
+    private int compressionMinSize;
+
+    /**
+     * The extensions of the files to compress. Archives such as JAR and ZIP files are never
+     * compressed, even if their extension is listed here.
+     */
+    @Parameter(
+            property = "resolverProxy.compressionTypes",
+            defaultValue = "pom,xml,module,json,txt")
+    private List<String> compressionTypes;
+
+    /**
+     * Glob patterns for requests that are rejected with a 404 without invoking the resolver. In a
+     * pattern, {@code *} matches any sequence of characters except {@code /}, and {@code **}
+     * matches any sequence of characters. Patterns without {@code /} only match the file name.
+     * The default value rejects signatures, which the proxy can never supply. Other candidates
+     * are {@code *-sources.jar} and {@code *-javadoc.jar} if the invoked projects never need them.
+     */
+    @Parameter(
+            property = "resolverProxy.rejectPatterns",
+            defaultValue = "*.asc,*.asc.*,*.sig,*.sigstore,*.sigstore.json")
+    private List<String> rejectPatterns;
+
+    /**
+     * The maximum number of concurrent artifact and metadata resolutions. Requests that can be
+     * answered from the caches don't count against this limit.
+     */
+    @Parameter(property = "resolverProxy.resolverThreads", defaultValue = "16")
+    private int resolverThreads;
+
+    /**
+     * The maximum number of concurrent resolutions on behalf of a single invoked build; 0 means no
+     * limit other than {@code resolverThreads}. Resolutions are scheduled fairly across invoked
+     * builds (identified by the {@code X-Resolver-Proxy-Build} header set by the generated
+     * settings file), so that a build requesting many artifacts doesn't stall the other builds.
+     */
+    @Parameter(property = "resolverProxy.maxResolutionsPerBuild", defaultValue = "0")
+    private int maxResolutionsPerBuild;
+
+    /**
+     * The scheduling weights of invoked builds, keyed by a suffix of the build identifier (the
+     * base directory of the invoked project, e.g. the name of the project directory in {@code
+     * src/it}). A build with weight 2 gets twice the share of the resolver threads of a build with
+     * the default weight 1 when both have pending resolutions.
+     */
+    @Parameter
+    private Map<String, Integer> buildWeights = Map.of();
+
+    /**
+     * Whether to execute requests on virtual threads. Most of the time spent by a request is
+     * blocked in the artifact resolver, so this avoids running out of threads under heavy load.
+     * Ignored (with a warning) if the JRE doesn't support virtual threads.
+     */
+    @Parameter(property = "resolverProxy.virtualThreads", defaultValue = "false")
+    private boolean virtualThreads;
+
+    /**
+     * The maximum number of threads (or concurrently executing virtual threads) used to process
+     * requests.
+     */
+    @Parameter(property = "resolverProxy.maxThreads", defaultValue = "200")
+    private int maxThreads;
+
+    /** The minimum number of threads to keep in the pool. Not used with virtual threads. */
+    @Parameter(property = "resolverProxy.minThreads", defaultValue = "8")
+    private int minThreads;
+
+    /** The number of acceptor threads of the connector; -1 lets Jetty choose. */
+    @Parameter(property = "resolverProxy.acceptors", defaultValue = "-1")
+    private int acceptors;
+
+    /** The number of selectors of the connector; -1 lets Jetty choose. */
+    @Parameter(property = "resolverProxy.selectors", defaultValue = "-1")
+    private int selectors;
+
+    /** The idle timeout (in milliseconds) of client connections. */
+    @Parameter(property = "resolverProxy.idleTimeout", defaultValue = "30000")
+    private long idleTimeout;
+
+    /** The size of the accept queue of the server socket; 0 uses the system default. */
+    @Parameter(property = "resolverProxy.acceptQueueSize", defaultValue = "0")
+    private int acceptQueueSize;
+
+    /**
+     * Whether to resolve the dependencies and plugins of the invoked projects in the background
+     * when the proxy starts.
+     */
+    @Parameter(property = "resolverProxy.prefetch", defaultValue = "false")
+    private boolean prefetch;
+
+    /**
+     * Glob patterns (relative to the project base directory) for the POM files of the invoked
+     * projects to prefetch. Tokens such as {@code @project.version@} are replaced in the same way
+     * as maven-invoker-plugin does.
+     */
+    @Parameter(property = "resolverProxy.prefetchProjects", defaultValue = "src/it/*/pom.xml")
+    private List<String> prefetchProjects;
+
+    /** The number of threads used to prefetch artifacts. */
+    @Parameter(property = "resolverProxy.prefetchThreads", defaultValue = "4")
+    private int prefetchThreads;
+
+    /**
+     * The maximum number of POMs to resolve speculatively. When the proxy serves a POM, the POMs
+     * of its parent, imported BOMs and direct dependencies are resolved in the background, because
+     * the invoked build is likely to request them next. 0 disables speculative prefetch.
+     */
+    @Parameter(property = "resolverProxy.speculativePrefetchBudget", defaultValue = "0")
+    private int speculativePrefetchBudget;
+
+    /**
+     * The maximum number of pending speculative resolutions. Further work is dropped until the
+     * queue drains.
+     */
+    @Parameter(property = "resolverProxy.speculativePrefetchQueueSize", defaultValue = "256")
+    private int speculativePrefetchQueueSize;
+
+    /** The number of threads used for speculative prefetch. */
+    @Parameter(property = "resolverProxy.speculativePrefetchThreads", defaultValue = "2")
+    private int speculativePrefetchThreads;
+
+    /**
+     * Whether to place the artifacts served by the proxy directly into the local repository used
+     * by the invoked projects ({@code invoker.localRepositoryPath}), together with the metadata
+     * Maven resolver maintains for downloaded artifacts. Files from the local repository are hard
+     * linked if possible; other files, such as artifacts from the reactor, are copied. Later
+     * builds using the same local repository then find these artifacts without going through the
+     * proxy.
+     */
+    @Parameter(property = "resolverProxy.seedLocalRepository", defaultValue = "false")
+    private boolean seedLocalRepository;
+
+    /**
+     * Whether to persist resolution results in {@code indexFile} so that later builds start warm.
+     * Artifact entries are validated against the size and last modification time of the resolved
+     * file; metadata entries are subject to {@code indexMetadataMaxAge}. Snapshot artifacts and
+     * negative metadata results are never persisted.
+     */
+    @Parameter(property = "resolverProxy.persistentIndex", defaultValue = "false")
+    private boolean persistentIndex;
+
+    /** The file used to persist resolution results. */
+    @Parameter(
+            property = "resolverProxy.indexFile",
+            defaultValue = "${project.build.directory}/resolver-proxy/index")
+    private File indexFile;
+
+    /**
+     * The age (in seconds) after which persisted metadata is resolved again. 0 disables the reuse
+     * of persisted metadata; -1 means that persisted metadata never expires.
+     */
+    @Parameter(property = "resolverProxy.indexMetadataMaxAge", defaultValue = "86400")
+    private long indexMetadataMaxAge;
+
+    /**
+     * Whether to record the requests processed by the proxy and write them to {@code timelineFile}
+     * when the proxy is stopped. The file uses the Chrome trace event format and can be loaded
+     * into {@code chrome://tracing} or Perfetto. Requests are grouped by invoked build, which is
+     * identified by the {@code X-Resolver-Proxy-Build} header set by the generated settings file.
+     */
+    @Parameter(property = "resolverProxy.timeline", defaultValue = "false")
+    private boolean timeline;
+
+    /** The file the request timeline is written to. */
+    @Parameter(
+            property = "resolverProxy.timelineFile",
+            defaultValue = "${project.build.directory}/resolver-proxy/timeline.json")
+    private File timelineFile;
+
+    /** The maximum number of requests recorded in the timeline. */
+    @Parameter(property = "resolverProxy.timelineMaxRequests", defaultValue = "100000")
+    private int timelineMaxRequests;
+
+    /**
+     * Whether to record every request (path, timing, status and size) to {@code traceFile}. The
+     * trace can be replayed against a proxy backed by a fake repository with the load generator in
+     * the benchmarks project, to measure the scaling of the proxy without a real invoker run.
+     */
+    @Parameter(property = "resolverProxy.recordTrace", defaultValue = "false")
+    private boolean recordTrace;
+
+    /** The file the request trace is written to. */
+    @Parameter(
+            property = "resolverProxy.traceFile",
+            defaultValue = "${project.build.directory}/resolver-proxy/trace.tsv")
+    private File traceFile;
+
+    /**
+     * Whether to share a single server between all projects in the reactor. Each project is served
+     * under its own context path (see the {@code resolverProxyUrl} property), with its own plugin
+     * metadata, remote repositories and metadata caches. Artifacts are resolved from the remote
+     * repositories of the project, falling back to its plugin repositories if they differ; without
+     * a shared server, the repositories of the session are used. The server, the content and
+     * checksum caches, and the resolver threads are shared; resolutions are scheduled fairly across
+     * the invoked builds of all projects (see {@code maxResolutionsPerBuild}). Projects with the
+     * same remote repositories also share the resolution cache, and concurrent resolutions of the
+     * same artifact on their behalf are coalesced.
+     * The server is stopped once all projects executing the start goal have executed the stop goal,
+     * or at the latest when the Maven session ends.
+     * The server configuration is taken from the first project that starts it.
+     */
+    @Parameter(property = "resolverProxy.shareServer", defaultValue = "false")
+    private boolean shareServer;
+
+    /**
+     * Whether to accept HTTP/2 over cleartext (h2c) connections, using either the HTTP/1.1 upgrade
+     * mechanism or prior knowledge, in addition to HTTP/1.1. This allows clients to multiplex
+     * parallel downloads over a single connection.
+     */
+    @Parameter(property = "resolverProxy.http2", defaultValue = "false")
+    private boolean http2;
+
+    /** The maximum number of concurrent HTTP/2 streams per connection. */
+    @Parameter(property = "resolverProxy.http2MaxConcurrentStreams", defaultValue = "128")
+    private int http2MaxConcurrentStreams;
+
+    /** The initial HTTP/2 flow control window (in bytes) of a session; -1 lets Jetty choose. */
+    @Parameter(property = "resolverProxy.http2SessionWindow", defaultValue = "-1")
+    private int http2SessionWindow;
+
+    /** The initial HTTP/2 flow control window (in bytes) of a stream; -1 lets Jetty choose. */
+    @Parameter(property = "resolverProxy.http2StreamWindow", defaultValue = "-1")
+    private int http2StreamWindow;
+
+    /**
+     * The resolver transport that invoked builds are configured to use (via the {@code
+     * maven.resolver.transport} property in the generated settings file). If not set, invoked
+     * builds use the default transport of their Maven version, which uses HTTP/1.1. To use HTTP/2,
+     * set this to {@code jdk}; note that this transport is only available in Maven 4.
+     */
+    @Parameter(property = "resolverProxy.clientTransport")
+    private String clientTransport;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
-        Server server = new Server();
-        ServerConnector connector = new ServerConnector(server);
-        if (resolverProxyPort != -1) {
-            connector.setPort(resolverProxyPort);
+        ProxyServer proxyServer;
+        String contextPath;
+        if (shareServer) {
+            proxyServer =
+                    (ProxyServer)
+                            session.getRepositorySession()
+                                    .getData()
+                                    .computeIfAbsent(
+                                            ProxyServer.SESSION_KEY,
+                                            () -> createProxyServer(countSharedServerUsers()));
+            contextPath = "/" + project.getGroupId() + "/" + project.getArtifactId();
+        } else {
+            proxyServer = createProxyServer(1);
+            contextPath = "";
         }
-        server.addConnector(connector);
-        ServletContextHandler context = new ServletContextHandler("/");
-        ServletHolder servlet =
-                new ServletHolder(
-                        new ResolverProxyServlet(
-                                repositorySystem,
-                                resolver,
-                                session,
-                                project.getPluginManagement()));
-        context.addServlet(servlet, "/*");
+        PluginIndex pluginIndex;
+        ReactorIndex reactorIndex;
+        try {
+            pluginIndex =
+                    PluginIndex.build(
+                            project,
+                            session.getProjects(),
+                            session.getSettings().getPluginGroups());
+            reactorIndex = ReactorIndex.build(session.getProjects());
+        } catch (XMLStreamException ex) {
+            throw new MojoExecutionException(
+                    String.format("Failed to generate metadata: %s", ex.getMessage()), ex);
+        }
+        log.debug(
+                "Indexed {} plugins and {} reactor artifacts",
+                pluginIndex.size(),
+                reactorIndex.size());
+        ProjectBuildingRequest buildingRequest;
+        ProjectBuildingRequest pluginBuildingRequest;
+        String repositoriesKey;
+        if (shareServer) {
+            // Use the remote repositories of the project, so that projects sharing the server get
+            // the artifacts they would get when resolving them themselves. Plugin repositories are
+            // only used for artifacts that can't be resolved from the artifact repositories.
+            buildingRequest = createBuildingRequest(project.getRemoteArtifactRepositories());
+            repositoriesKey = getRepositoriesKey(project.getRemoteArtifactRepositories());
+            String pluginRepositoriesKey =
+                    getRepositoriesKey(project.getPluginArtifactRepositories());
+            if (pluginRepositoriesKey.equals(repositoriesKey)) {
+                pluginBuildingRequest = null;
+            } else {
+                pluginBuildingRequest =
+                        createBuildingRequest(project.getPluginArtifactRepositories());
+                repositoriesKey += "|" + pluginRepositoriesKey;
+            }
+        } else {
+            buildingRequest = session.getProjectBuildingRequest();
+            pluginBuildingRequest = null;
+            repositoriesKey = getRepositoriesKey(buildingRequest.getRemoteRepositories());
+        }
+        Timeline requestTimeline =
+                timeline
+                        ? new Timeline(timelineFile.toPath(), timelineMaxRequests)
+                        : Timeline.DISABLED;
+        ResolverProxyServlet servlet =
+                new ResolverProxyServlet(
+                        repositorySystem,
+                        session,
+                        buildingRequest,
+                        pluginBuildingRequest,
+                        pluginIndex,
+                        reactorIndex,
+                        new RequestFilter(rejectPatterns),
+                        proxyServer.getResolvedArtifacts(repositoriesKey),
+                        proxyServer.getArtifactResolutions(repositoriesKey),
+                        new BoundedCache<>(notFoundCacheSize, notFoundCacheTtl, TimeUnit.SECONDS),
+                        new BoundedCache<>(metadataCacheSize, metadataCacheTtl, TimeUnit.SECONDS),
+                        proxyServer.getDigestIndex(),
+                        proxyServer.getContentCache(),
+                        compression
+                                ? new Compression(compressionMinSize, compressionTypes)
+                                : Compression.DISABLED,
+                        speculativePrefetchBudget > 0
+                                ? new SpeculativePrefetcher(
+                                        speculativePrefetchThreads,
+                                        speculativePrefetchQueueSize,
+                                        speculativePrefetchBudget)
+                                : SpeculativePrefetcher.DISABLED,
+                        seedLocalRepository ? getInvokerLocalRepository() : null,
+                        persistentIndex
+                                ? new PersistentIndex(
+                                        indexFile.toPath(), indexMetadataMaxAge, TimeUnit.SECONDS)
+                                : PersistentIndex.DISABLED,
+                        requestTimeline,
+                        recordTrace
+                                ? new TraceRecorder(traceFile.toPath())
+                                : TraceRecorder.DISABLED,
+                        proxyServer.getScheduler());
+        ServletContextHandler context =
+                new ServletContextHandler(contextPath.isEmpty() ? "/" : contextPath);
+        ServletHolder servletHolder = new ServletHolder(servlet);
+        servletHolder.setAsyncSupported(true);
+        context.addServlet(servletHolder, "/*");
         context.setErrorHandler(
                 new ErrorHandler() {
                     @Override
@@ -101,23 +502,49 @@ public class StartMojo extends AbstractMojo {
                         return super.handle(request, response, callback);
                     }
                 });
-        server.setHandler(context);
+        boolean started;
         try {
-            server.start();
+            started = proxyServer.register(context);
         } catch (Exception ex) {
             throw new MojoExecutionException(
                     String.format("Failed to start embedded Jetty server: %s", ex.getMessage()),
                     ex);
         }
-        int port = connector.getLocalPort();
-        log.info("Resolver proxy started on port {}", port);
+        int port = proxyServer.getPort();
+        String url = "http://localhost:" + port + contextPath;
+        if (started) {
+            ServerConnector connector = proxyServer.getConnector();
+            log.info("Resolver proxy started on port {}", port);
+            log.info(
+                    "Using {}, protocols {}, {} acceptors, {} selectors, idle timeout {} ms,"
+                            + " accept queue size {}",
+                    proxyServer.getDescription(),
+                    connector.getProtocols(),
+                    connector.getAcceptors(),
+                    connector.getSelectorManager().getSelectorCount(),
+                    idleTimeout,
+                    acceptQueueSize);
+        }
+        if (shareServer) {
+            log.info("Serving {} at {}", project.getId(), url);
+        }
 
         Properties props = project.getProperties();
         props.setProperty("resolverProxyPort", String.valueOf(port));
+        props.setProperty("resolverProxyUrl", url);
+        boolean transportSelected = clientTransport != null && !clientTransport.isEmpty();
+        if (transportSelected) {
+            props.setProperty("resolverProxyTransport", clientTransport);
+        }
         if (!props.containsKey("invoker.settingsFile")) {
             settingsFile.getParentFile().mkdirs();
             try (InputStream in = StartMojo.class.getResourceAsStream("settings.xml")) {
-                Files.copy(in, settingsFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                String settings = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                if (!transportSelected) {
+                    // Let the invoked builds use the default transport of their Maven version.
+                    settings = TRANSPORT_PROPERTY.matcher(settings).replaceAll("");
+                }
+                Files.writeString(settingsFile.toPath(), settings);
             } catch (IOException ex) {
                 throw new MojoExecutionException(
                         String.format("Failed to create %s: %s", settingsFile, ex.getMessage()),
@@ -129,6 +556,135 @@ public class StartMojo extends AbstractMojo {
             props.setProperty("invoker.localRepositoryPath", localRepositoryPath.getAbsolutePath());
         }
 
-        getPluginContext().put(Constants.SERVER_KEY, server);
+        getPluginContext().put(Constants.SERVER_KEY, proxyServer);
+        getPluginContext().put(Constants.CONTEXT_KEY, context);
+        getPluginContext().put(Constants.SERVLET_KEY, servlet);
+        getPluginContext().put(Constants.TIMELINE_KEY, requestTimeline);
+
+        if (prefetch) {
+            List<Path> poms;
+            try {
+                poms = Prefetcher.findProjects(project.getBasedir().toPath(), prefetchProjects);
+            } catch (IOException ex) {
+                throw new MojoExecutionException(
+                        String.format("Failed to scan invoked projects: %s", ex.getMessage()), ex);
+            }
+            Prefetcher prefetcher =
+                    new Prefetcher(repositorySystem, session, project, servlet, prefetchThreads);
+            prefetcher.prefetch(poms);
+            log.info("Prefetching dependencies of {} invoked projects", poms.size());
+            getPluginContext().put(Constants.PREFETCHER_KEY, prefetcher);
+        }
+    }
+
+    private ProxyServer createProxyServer(int expectedUsers) {
+        ThreadPool threadPool;
+        String threadPoolDescription;
+        if (virtualThreads && VirtualThreads.areSupported()) {
+            VirtualThreadPool virtualThreadPool = new VirtualThreadPool();
+            virtualThreadPool.setName("resolver-proxy");
+            virtualThreadPool.setMaxThreads(maxThreads);
+            threadPool = virtualThreadPool;
+            threadPoolDescription = String.format("virtual threads (max %d)", maxThreads);
+        } else {
+            if (virtualThreads) {
+                log.warn("Virtual threads are not supported by this JRE; using platform threads");
+            }
+            QueuedThreadPool queuedThreadPool = new QueuedThreadPool(maxThreads, minThreads);
+            queuedThreadPool.setName("resolver-proxy");
+            // The server must never keep the JVM alive, even if it is not stopped.
+            queuedThreadPool.setDaemon(true);
+            threadPool = queuedThreadPool;
+            threadPoolDescription =
+                    String.format("platform threads (min %d, max %d)", minThreads, maxThreads);
+        }
+        Server server =
+                new Server(
+                        threadPool,
+                        new ScheduledExecutorScheduler("resolver-proxy-scheduler", true),
+                        null);
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        ServerConnector connector;
+        if (http2) {
+            HTTP2CServerConnectionFactory h2c = new HTTP2CServerConnectionFactory(httpConfig);
+            h2c.setMaxConcurrentStreams(http2MaxConcurrentStreams);
+            if (http2SessionWindow != -1) {
+                h2c.setInitialSessionRecvWindow(http2SessionWindow);
+            }
+            if (http2StreamWindow != -1) {
+                h2c.setInitialStreamRecvWindow(http2StreamWindow);
+            }
+            connector =
+                    new ServerConnector(
+                            server,
+                            acceptors,
+                            selectors,
+                            new HttpConnectionFactory(httpConfig),
+                            h2c);
+        } else {
+            connector =
+                    new ServerConnector(
+                            server, acceptors, selectors, new HttpConnectionFactory(httpConfig));
+        }
+        if (resolverProxyPort != -1) {
+            connector.setPort(resolverProxyPort);
+        }
+        connector.setIdleTimeout(idleTimeout);
+        connector.setAcceptQueueSize(acceptQueueSize);
+        server.addConnector(connector);
+        ProxyServer proxyServer =
+                new ProxyServer(
+                        server,
+                        connector,
+                        threadPoolDescription,
+                        new ContentCache(
+                                contentCacheSize * 1024L * 1024L,
+                                contentCacheMaxFileSize * 1024L,
+                                maxMappedFiles),
+                        digestIndexSize,
+                        resolutionCacheSize,
+                        () ->
+                                new FairScheduler(
+                                        resolverThreads, maxResolutionsPerBuild, buildWeights),
+                        expectedUsers);
+        SessionEndListener.register(session, proxyServer);
+        return proxyServer;
+    }
+
+    /**
+     * Count the projects in the reactor that execute the start goal of this plugin. The shared
+     * server is kept running until all of them have executed the stop goal.
+     */
+    private int countSharedServerUsers() {
+        int count = 0;
+        for (MavenProject reactorProject : session.getProjects()) {
+            Plugin plugin = reactorProject.getPlugin(pluginDescriptor.getPluginLookupKey());
+            if (plugin != null
+                    && plugin.getExecutions().stream()
+                            .anyMatch(execution -> execution.getGoals().contains("start"))) {
+                count++;
+            }
+        }
+        return Math.max(count, 1);
+    }
+
+    private ProjectBuildingRequest createBuildingRequest(List<ArtifactRepository> repositories) {
+        ProjectBuildingRequest buildingRequest =
+                new DefaultProjectBuildingRequest(session.getProjectBuildingRequest());
+        buildingRequest.setProject(project);
+        buildingRequest.setRemoteRepositories(repositories);
+        return buildingRequest;
+    }
+
+    /** Get a string identifying the given remote repositories, used as resolution cache key. */
+    private static String getRepositoriesKey(List<ArtifactRepository> repositories) {
+        return repositories.stream()
+                .map(repository -> repository.getId() + "=" + repository.getUrl())
+                .collect(Collectors.joining(","));
+    }
+
+    private Path getInvokerLocalRepository() {
+        String path = project.getProperties().getProperty("invoker.localRepositoryPath");
+        return path != null ? Path.of(path) : localRepositoryPath.toPath();
     }
 }
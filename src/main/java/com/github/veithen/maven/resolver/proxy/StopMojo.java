@@ -19,12 +19,16 @@
  */
 package com.github.veithen.maven.resolver.proxy;
 
+import java.io.IOException;
+
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
-import org.eclipse.jetty.server.Server;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,18 +36,53 @@ import org.slf4j.LoggerFactory;
 public class StopMojo extends AbstractMojo {
     private static final Logger log = LoggerFactory.getLogger(StopMojo.class);
 
+    @Parameter(property = "session", required = true, readonly = true)
+    private MavenSession session;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
-        Server server = (Server) getPluginContext().get(Constants.SERVER_KEY);
+        ProxyServer server = (ProxyServer) getPluginContext().get(Constants.SERVER_KEY);
+        Prefetcher prefetcher = (Prefetcher) getPluginContext().get(Constants.PREFETCHER_KEY);
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+        }
         if (server != null) {
+            ServletContextHandler context =
+                    (ServletContextHandler) getPluginContext().get(Constants.CONTEXT_KEY);
+            boolean stopped;
             try {
-                server.stop();
+                stopped = server.unregister(context);
             } catch (Exception ex) {
                 throw new MojoExecutionException(
                         String.format("Failed to stop embedded Jetty server: %s", ex.getMessage()),
                         ex);
             }
-            log.info("Resolver proxy stopped");
+            if (stopped) {
+                SessionEndListener.unregister(session, server);
+                log.info("Resolver proxy stopped");
+            } else {
+                log.info("Unregistered from shared resolver proxy");
+            }
+            ResolverProxyServlet servlet =
+                    (ResolverProxyServlet) getPluginContext().get(Constants.SERVLET_KEY);
+            if (servlet != null) {
+                servlet.logStatistics();
+            }
+            if (prefetcher != null) {
+                log.info("Prefetch: {}", prefetcher);
+            }
+            Timeline timeline = (Timeline) getPluginContext().get(Constants.TIMELINE_KEY);
+            if (timeline != null && timeline.getFile() != null) {
+                try {
+                    timeline.write();
+                } catch (IOException ex) {
+                    throw new MojoExecutionException(
+                            String.format(
+                                    "Failed to write %s: %s", timeline.getFile(), ex.getMessage()),
+                            ex);
+                }
+                log.info("Request timeline written to {}", timeline.getFile());
+            }
         }
     }
 }
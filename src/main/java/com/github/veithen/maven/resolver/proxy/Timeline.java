@@ -0,0 +1,224 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the requests processed by the proxy and writes them as a timeline in the Chrome trace
+ * event format, which can be loaded into {@code chrome://tracing} or Perfetto. Each invoked build
+ * is shown as a process and concurrent requests from the same build are laid out on separate
+ * tracks.
+ */
+final class Timeline {
+    static final Timeline DISABLED = new Timeline(null, 0);
+
+    private record Span(
+            String build,
+            String path,
+            String kind,
+            String source,
+            int status,
+            long bytes,
+            long start,
+            long resolveStart,
+            long sendStart,
+            long end) {}
+
+    private final Path file;
+    private final int maxSpans;
+    private final long origin = System.nanoTime();
+    private final List<Span> spans = new ArrayList<>();
+    private int dropped;
+
+    /**
+     * Constructor.
+     *
+     * @param file the file to write the timeline to
+     * @param maxSpans the maximum number of requests to record; further requests are dropped
+     */
+    Timeline(Path file, int maxSpans) {
+        this.file = file;
+        this.maxSpans = maxSpans;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Record a request. Times are values returned by {@link System#nanoTime()}.
+     *
+     * @param build the build that sent the request, or {@code null} if unknown
+     * @param resolveStart the time at which the resolution started, or -1 if the request was
+     *     answered without resolution
+     */
+    void record(
+            String build,
+            String path,
+            Metrics.Kind kind,
+            Metrics.Source source,
+            int status,
+            long bytes,
+            long start,
+            long resolveStart,
+            long sendStart,
+            long end) {
+        if (file == null) {
+            return;
+        }
+        Span span =
+                new Span(
+                        build == null ? "unknown" : build,
+                        path,
+                        kind.name(),
+                        source.name(),
+                        status,
+                        bytes,
+                        start,
+                        resolveStart,
+                        sendStart,
+                        end);
+        synchronized (spans) {
+            if (spans.size() < maxSpans) {
+                spans.add(span);
+            } else {
+                dropped++;
+            }
+        }
+    }
+
+    /** Write the recorded requests to the timeline file. */
+    void write() throws IOException {
+        if (file == null) {
+            return;
+        }
+        Map<String, List<Span>> spansByBuild = new LinkedHashMap<>();
+        synchronized (spans) {
+            for (Span span : spans) {
+                spansByBuild.computeIfAbsent(span.build(), k -> new ArrayList<>()).add(span);
+            }
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+            boolean first = true;
+            int pid = 0;
+            for (Map.Entry<String, List<Span>> entry : spansByBuild.entrySet()) {
+                pid++;
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                out.write("\n{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":");
+                out.write(String.valueOf(pid));
+                out.write(",\"args\":{\"name\":");
+                writeString(out, entry.getKey());
+                out.write("}}");
+                List<Span> buildSpans = entry.getValue();
+                buildSpans.sort(Comparator.comparingLong(Span::start));
+                // Assign each request to the lowest numbered track that is free at its start, so
+                // that the spans on a track never overlap.
+                PriorityQueue<long[]> busyTracks =
+                        new PriorityQueue<>(Comparator.comparingLong(track -> track[0]));
+                PriorityQueue<Integer> freeTracks = new PriorityQueue<>();
+                int tracks = 0;
+                for (Span span : buildSpans) {
+                    while (!busyTracks.isEmpty() && busyTracks.peek()[0] <= span.start()) {
+                        freeTracks.add((int) busyTracks.poll()[1]);
+                    }
+                    int tid = freeTracks.isEmpty() ? ++tracks : freeTracks.poll();
+                    busyTracks.add(new long[] {span.end(), tid});
+                    writeSpan(out, pid, tid, span);
+                }
+            }
+            out.write("\n]}\n");
+        }
+    }
+
+    private void writeSpan(Writer out, int pid, int tid, Span span) throws IOException {
+        writeEvent(out, pid, tid, span.path(), span.kind(), span.start(), span.end());
+        out.write(",\"args\":{\"source\":\"");
+        out.write(span.source());
+        out.write("\",\"status\":");
+        out.write(String.valueOf(span.status()));
+        out.write(",\"bytes\":");
+        out.write(String.valueOf(span.bytes()));
+        out.write("}}");
+        if (span.resolveStart() != -1) {
+            writeEvent(out, pid, tid, "resolve", "stage", span.resolveStart(), span.sendStart());
+            out.write('}');
+        }
+        writeEvent(out, pid, tid, "send", "stage", span.sendStart(), span.end());
+        out.write('}');
+    }
+
+    /** Write a complete event, leaving the JSON object open. */
+    private void writeEvent(
+            Writer out, int pid, int tid, String name, String category, long start, long end)
+            throws IOException {
+        out.write(",\n{\"name\":");
+        writeString(out, name);
+        out.write(",\"cat\":\"");
+        out.write(category);
+        out.write("\",\"ph\":\"X\",\"pid\":");
+        out.write(String.valueOf(pid));
+        out.write(",\"tid\":");
+        out.write(String.valueOf(tid));
+        out.write(",\"ts\":");
+        out.write(String.valueOf(TimeUnit.NANOSECONDS.toMicros(start - origin)));
+        out.write(",\"dur\":");
+        out.write(String.valueOf(TimeUnit.NANOSECONDS.toMicros(end - start)));
+    }
+
+    private static void writeString(Writer out, String s) throws IOException {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    @Override
+    public String toString() {
+        synchronized (spans) {
+            return String.format("%d requests recorded, %d dropped", spans.size(), dropped);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*-
+ * #%L
+ * Resolver Proxy Maven Plugin
+ * %%
+ * Copyright (C) 2018 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.maven.resolver.proxy;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the requests processed by the proxy to a trace file, so that the load generated by a
+ * real invoker run can be replayed offline. The file has one line per request with the following
+ * tab separated fields: the start time (in microseconds since the recorder was created), the
+ * build that sent the request, the method, the path, the status, the number of content bytes sent
+ * and the duration in microseconds. Lines are written as requests complete, so they are not
+ * necessarily ordered by start time. Trace files are read by the replay tool in the benchmarks
+ * project.
+ */
+final class TraceRecorder {
+    private static final Logger log = LoggerFactory.getLogger(TraceRecorder.class);
+
+    private static final String HEADER = "# resolver-proxy trace v1";
+
+    static final TraceRecorder DISABLED = new TraceRecorder(null);
+
+    private final Path file;
+    private final long origin = System.nanoTime();
+    private Writer out;
+    private boolean closed;
+    private long count;
+
+    TraceRecorder(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Record a completed request. Times are values returned by {@link System#nanoTime()}.
+     *
+     * @param build the build that sent the request, or {@code null} if unknown
+     */
+    void record(
+            String build,
+            String method,
+            String path,
+            int status,
+            long bytes,
+            long start,
+            long end) {
+        if (file == null) {
+            return;
+        }
+        String line =
+                TimeUnit.NANOSECONDS.toMicros(start - origin)
+                        + "\t"
+                        + (build == null ? "unknown" : build.replaceAll("\\s", " "))
+                        + "\t"
+                        + method
+                        + "\t"
+                        + path
+                        + "\t"
+                        + status
+                        + "\t"
+                        + bytes
+                        + "\t"
+                        + TimeUnit.NANOSECONDS.toMicros(end - start)
+                        + "\n";
+        synchronized (this) {
+            if (closed) {
+                // Requests completing after the server has been stopped.
+                return;
+            }
+            try {
+                if (out == null) {
+                    Files.createDirectories(file.toAbsolutePath().getParent());
+                    out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                    out.write(HEADER);
+                    out.write('\n');
+                }
+                out.write(line);
+                count++;
+            } catch (IOException ex) {
+                log.warn("Failed to write to {}; disabling it: {}", file, ex.getMessage());
+                close();
+            }
+        }
+    }
+
+    /** Close the trace file. Requests recorded after that are ignored. */
+    synchronized void close() {
+        closed = true;
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ex) {
+                log.warn("Failed to close {}: {}", file, ex.getMessage());
+            }
+            out = null;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return file == null
+                ? "disabled"
+                : String.format("%d requests recorded to %s", count, file);
+    }
+}